@@ -0,0 +1,233 @@
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Vector;
+
+import coordinates.Cartesian;
+import coordinates.WGS84;
+import coordinates.area.Area;
+import coordinates.area.AreaException;
+import locator.CompoundPdf;
+import pdf.GaussDistribution;
+import pdf.PDF;
+import utils.index.Index;
+
+/**
+ * Micro benchmarks of the hot paths of the fusion.
+ * Every benchmark is warmed up first and then repeated for a fixed time. The average time per operation and
+ * the heap growth per operation are printed. The heap growth is measured separately by short runs between
+ * two collections, see measureAllocation, as a long run would collect the very garbage it is measuring.
+ * Usage: java Benchmark [milliseconds per benchmark]
+ */
+public class Benchmark {
+
+    public static void main(String[] args)
+    {
+        if (args.length > 0) {
+            duration = Long.parseLong(args[0]);
+        }
+
+        int[] sizes = {10, 20, 40};
+        int[] counts = {1, 2, 4};
+        for (int i=0; i < sizes.length; i++) {
+            for (int j=0; j < counts.length; j++) {
+                final Vector pdfs = new Vector();
+                for (int k=0; k < counts[j]; k++) {
+                    pdfs.add(new GaussDistribution(cube(sizes[i]), 20.0));
+                }
+                measure("CompoundPdf.<init> size=" + (2 * sizes[i] + 1) + "^3 pdfs=" + counts[j], new Operation() {
+                    public double run()
+                    {
+                        return new CompoundPdf(pdfs).getPointOfMaxProbability().getX();
+                    }
+                });
+            }
+        }
+
+        for (int i=0; i < sizes.length; i++) {
+            final Area area = cube(sizes[i]);
+            measure("Cuboid.Iterator size=" + (2 * sizes[i] + 1) + "^3", new Operation() {
+                public double run()
+                {
+                    double sum = 0;
+                    for (Iterator it = area.iterator(); it.hasNext(); ) {
+                        sum += ((Cartesian) it.next()).getX();
+                    }
+                    return sum;
+                }
+            });
+        }
+
+        final GaussDistribution gauss = new GaussDistribution(cube(20), 20.0);
+        final Cartesian point = new Cartesian(3, -4, 5);
+        measure("GaussDistribution.getProbability", new Operation() {
+            public double run()
+            {
+                try {
+                    return gauss.getProbability(point).getValue();
+                } catch (AreaException e) {
+                    return 0;
+                }
+            }
+        });
+        measure("GaussDistribution.density", new Operation() {
+            public double run()
+            {
+                return gauss.density(3, -4, 5);
+            }
+        });
+
+        final WGS84 here = new WGS84(0.15, 0.84, 450.0);
+        final WGS84 there = new WGS84(0.1501, 0.8401, 452.0);
+        measure("WGS84.diff", new Operation() {
+            public double run()
+            {
+                return here.diff(there).getX();
+            }
+        });
+
+        final double[] longitudes = new double[1000];
+        final double[] latitudes = new double[1000];
+        final double[] altitudes = new double[1000];
+        final int[] xs = new int[1000], ys = new int[1000], zs = new int[1000];
+        Random random = new Random(0);
+        for (int i=0; i < longitudes.length; i++) {
+            longitudes[i] = 0.15 + random.nextGaussian() * 1e-4;
+            latitudes[i] = 0.84 + random.nextGaussian() * 1e-4;
+            altitudes[i] = 450.0 + random.nextGaussian() * 10.0;
+        }
+        measure("WGS84.diff batch of 1000", new Operation() {
+            public double run()
+            {
+                here.diff(longitudes, latitudes, altitudes, xs, ys, zs);
+                return xs[0];
+            }
+        });
+
+        int[] units = {1, 10, 100, 1000};
+        for (int i=0; i < units.length; i++) {
+            final Index index = Index.newIndex(ORIGIN, units[i]);
+            random = new Random(units[i]);
+            for (int j=0; j < units[i]; j++) {
+                Vector corners = new Vector();
+                int x = random.nextInt(1000), y = random.nextInt(1000), z = random.nextInt(30);
+                corners.add(new Cartesian(x, y, z));
+                corners.add(new Cartesian(x + 20, y + 20, z + 5));
+                index.add(Area.newArea(ORIGIN, corners), new Integer(j));
+            }
+            final Cartesian[] probes = new Cartesian[1024];
+            for (int j=0; j < probes.length; j++) {
+                probes[j] = new Cartesian(random.nextInt(1020), random.nextInt(1020), random.nextInt(35));
+            }
+            measure("Index.get units=" + units[i], new Operation() {
+                public double run()
+                {
+                    Object unit = index.get(probes[next++ & 1023]);
+                    return unit == null ? 0 : 1;
+                }
+                private int next = 0;
+            });
+        }
+
+        // keep the results alive, so the work can not be optimized away
+        if (sink == 42.4242) {
+            System.out.println();
+        }
+    }
+
+    private interface Operation {
+        public double run();
+    }
+
+    /**
+     * run an operation repeatedly and print the average time and heap growth per operation.
+     */
+    private static void measure(String name, Operation operation)
+    {
+        // warm up for a third of the time, then measure
+        repeat(operation, duration / 3);
+
+        long start = System.currentTimeMillis();
+        long operations = repeat(operation, duration);
+        long time = System.currentTimeMillis() - start;
+        long allocated = measureAllocation(operation);
+
+        double micros = time * 1000.0 / operations;
+        System.out.println(name + ": " + format(micros) + " us/op, " + operations + " ops, "
+                + (allocated < 0 ? "?" : "~" + allocated) + " bytes/op");
+    }
+
+    /**
+     * measure the heap growth per operation.
+     * The operation is run between two collections, as often as needed to grow the heap by a megabyte, which
+     * is less than the young generation of any usual heap. If the heap shrinks nevertheless, a collection
+     * interfered, and the run is repeated with fewer operations.
+     * @return the bytes per operation, or -1 if every run was interfered with
+     */
+    private static long measureAllocation(Operation operation)
+    {
+        Runtime runtime = Runtime.getRuntime();
+        long operations = 1;
+        long end = System.currentTimeMillis() + duration / 3;
+        for (int attempt=0; attempt < 50; attempt++) {
+            System.gc();
+            long memory = runtime.totalMemory() - runtime.freeMemory();
+            for (long i=0; i < operations; i++) {
+                sink += operation.run();
+            }
+            long allocated = runtime.totalMemory() - runtime.freeMemory() - memory;
+
+            if (allocated < 0) {
+                operations = Math.max(1, operations / 2);
+            } else if (allocated >= ALLOCATION || System.currentTimeMillis() >= end) {
+                return allocated / operations;
+            } else {
+                operations *= 2;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of operations run within the given time
+     */
+    private static long repeat(Operation operation, long millis)
+    {
+        long operations = 0;
+        long batch = 1;
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            for (long i=0; i < batch; i++) {
+                sink += operation.run();
+            }
+            operations += batch;
+            if (batch < 1000000) {
+                batch *= 2;
+            }
+        }
+
+        return operations;
+    }
+
+    private static String format(double value)
+    {
+        return String.valueOf(Math.round(value * 1000) / 1000.0);
+    }
+
+    private static Area cube(int size)
+    {
+        Vector corners = new Vector();
+        corners.add(new Cartesian(-size, -size, -size));
+        corners.add(new Cartesian(size, size, size));
+        return Area.newArea(ORIGIN, corners);
+    }
+
+    /** the heap growth of a run of measureAllocation */
+    private static final long ALLOCATION = 1 << 20;
+
+    private static final WGS84 ORIGIN = new WGS84(0.15, 0.84, 450.0);
+
+    private static long duration = 2000;
+    private static double sink = 0;
+}
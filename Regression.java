@@ -0,0 +1,426 @@
+
+import java.util.Random;
+import java.util.Vector;
+
+import coordinates.Cartesian;
+import coordinates.WGS84;
+import coordinates.area.Area;
+import coordinates.area.AreaException;
+import locator.CompoundPdfBuilder;
+import locator.ParticlePdf;
+import locator.PDFDrain;
+import pdf.AnisotropicGaussDistribution;
+import pdf.Container;
+import pdf.GaussDistribution;
+import pdf.PDF;
+import pdf.RasterDistribution;
+import pdf.SummedAreaTable;
+import plugins.PooledPlugin;
+import utils.index.Index;
+import utils.pool.Batch;
+import utils.pool.WorkerPool;
+
+/**
+ * Regression checks of bugs which were found after the code was written.
+ * Every check throws an AssertionError if the bug is back, otherwise its name is printed.
+ * Usage: java Regression
+ */
+public class Regression {
+
+    public static void main(String[] args)
+    {
+        sharedCorners();
+        queuedTriggers();
+        foldGaussians();
+        failedJobs();
+        hugeAreas();
+        sameIndexes();
+        summedMasses();
+        bulkProbabilities();
+    }
+
+    /**
+     * two PDFs with different origins share the corner objects, like those of the GPSPlugin.
+     * Moving one of them into the origin of the other must not change the corners of later areas.
+     */
+    private static void sharedCorners()
+    {
+        Cartesian lower = new Cartesian(-20, -20, -20);
+        Cartesian upper = new Cartesian(20, 20, 20);
+        WGS84 first = new WGS84(0.15, 0.84, 450);
+        WGS84 second = new WGS84(0.1500004, 0.8400003, 452);
+
+        PDF a = new GaussDistribution(newArea(first, lower, upper), 100);
+        PDF b = new GaussDistribution(newArea(second, lower, upper), 100);
+        b.move(a.getArea().getOrigin());
+
+        check(lower.getX() == -20 && lower.getY() == -20 && lower.getZ() == -20, "lower corner was moved");
+        check(upper.getX() == 20 && upper.getY() == 20 && upper.getZ() == 20, "upper corner was moved");
+
+        PDF c = new GaussDistribution(newArea(second, lower, upper), 100);
+        check(c.getArea().contains(0, 0, 0), "the mean is outside of the area");
+        pass("sharedCorners");
+    }
+
+    /**
+     * a pooled plugin is triggered by three requests while it is calculating.
+     * Every request must get a PDF of its own.
+     */
+    private static void queuedTriggers()
+    {
+        PooledPlugin plugin = new PooledPlugin() {
+            public Vector getRequiredServices()
+            {
+                return null;
+            }
+
+            protected boolean needMoreServices()
+            {
+                return false;
+            }
+
+            protected PDF createPdf(long timeout)
+            {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    ;
+                }
+                return new GaussDistribution(newArea(new WGS84(0.15, 0.84, 450), new Cartesian(-2, -2, -2),
+                    new Cartesian(2, 2, 2)), 1);
+            }
+
+            protected void freeRessources()
+            {
+            }
+        };
+        plugin.load();
+
+        final PDF[] delivered = new PDF[3];
+        PDFDrain drain = new PDFDrain() {
+            public void callback(PDF pdf, int handle)
+            {
+                synchronized (delivered) {
+                    delivered[handle] = pdf;
+                    delivered.notifyAll();
+                }
+            }
+        };
+
+        long deadline = System.currentTimeMillis() + 2000;
+        for (int i=0; i < delivered.length; i++) {
+            plugin.trigger(drain, deadline, i);
+        }
+
+        synchronized (delivered) {
+            while (System.currentTimeMillis() < deadline
+                    && (delivered[0] == null || delivered[1] == null || delivered[2] == null)) {
+                try {
+                    delivered.wait(100);
+                } catch (InterruptedException e) {
+                    ;
+                }
+            }
+        }
+        plugin.unload();
+
+        for (int i=0; i < delivered.length; i++) {
+            check(delivered[i] != null, "request " + i + " got no PDF");
+        }
+        check(delivered[0] != delivered[1] && delivered[1] != delivered[2], "requests share a PDF");
+        pass("queuedTriggers");
+    }
+
+    /**
+     * a builder for build folds gauss distributions as they arrive, only one for buildFused defers them.
+     */
+    private static void foldGaussians()
+    {
+        WGS84 origin = new WGS84(0.15, 0.84, 450);
+        CompoundPdfBuilder plain = new CompoundPdfBuilder(true, false);
+        CompoundPdfBuilder fused = new CompoundPdfBuilder(true, false, true);
+        for (int i=0; i < 2; i++) {
+            plain.add(new GaussDistribution(newArea(origin, new Cartesian(-5, -5, -5), new Cartesian(5, 5, 5)), 4));
+            fused.add(new GaussDistribution(newArea(origin, new Cartesian(-5, -5, -5), new Cartesian(5, 5, 5)), 4));
+        }
+
+        check(plain.getNumberOfFoldedPdfs() == 2, "build gets a raster which is not folded yet");
+        check(fused.getNumberOfFoldedPdfs() == 0, "buildFused folds gauss distributions");
+        check(plain.build().getPointOfMaxProbability().getX() == 0, "wrong maximum");
+        pass("foldGaussians");
+    }
+
+    /**
+     * a failing job of a batch must fail the batch, and the workers of the pool must survive it.
+     */
+    private static void failedJobs()
+    {
+        WorkerPool pool = new WorkerPool(2);
+        for (int round=0; round < 3; round++) {
+            Batch batch = new Batch(pool);
+            for (int i=0; i < 8; i++) {
+                final int job = i;
+                batch.add(new Runnable() {
+                    public void run()
+                    {
+                        if (job == 5) {
+                            throw new IllegalStateException("job " + job);
+                        }
+                    }
+                });
+            }
+
+            boolean failed = false;
+            try {
+                batch.run();
+            } catch (IllegalStateException e) {
+                failed = "job 5".equals(e.getMessage());
+            }
+            check(failed, "the failure of a job was lost");
+        }
+
+        // an error must not kill the only worker
+        final boolean[] done = new boolean[1];
+        WorkerPool single = new WorkerPool(1);
+        single.execute(new Runnable() {
+            public void run()
+            {
+                throw new AssertionError("job");
+            }
+        });
+        single.execute(new Runnable() {
+            public void run()
+            {
+                synchronized (done) {
+                    done[0] = true;
+                    done.notifyAll();
+                }
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + 2000;
+        synchronized (done) {
+            while (! done[0] && System.currentTimeMillis() < deadline) {
+                try {
+                    done.wait(100);
+                } catch (InterruptedException e) {
+                    ;
+                }
+            }
+        }
+        pool.shutdown();
+        single.shutdown();
+        check(done[0], "the worker died of a failed job");
+        pass("failedJobs");
+    }
+
+    /**
+     * an area with more points than an int can count must be counted and indexed by long,
+     * and the int methods must not return an overflowed value.
+     */
+    private static void hugeAreas()
+    {
+        WGS84 origin = new WGS84(0.15, 0.84, 450);
+        Area area = newArea(origin, new Cartesian(-1000, -1000, -1000), new Cartesian(999, 999, 999));
+        check(area.getNumberOfVoxels() == 8000000000L, "wrong number of points");
+
+        boolean thrown = false;
+        try {
+            area.getNumberOfPoints();
+        } catch (ArithmeticException e) {
+            thrown = true;
+        }
+        check(thrown, "the number of points overflows");
+
+        long index = area.indexOfVoxel(999, 998, 997);
+        check(index == (1997L * 2000 + 1998) * 2000 + 1999, "wrong index");
+        Cartesian point = area.getVoxel(index);
+        check(point.getX() == 999 && point.getY() == 998 && point.getZ() == 997, "wrong point of an index");
+
+        // the particles are drawn from the whole area, not from an overflowed count
+        Vector pdfs = new Vector();
+        pdfs.add(new GaussDistribution(area, 1000000));
+        ParticlePdf particles = new ParticlePdf(pdfs, 1000, new Random(1));
+        Cartesian mean = particles.getMean();
+        check(Math.abs(mean.getX()) < 300 && Math.abs(mean.getY()) < 300 && Math.abs(mean.getZ()) < 300,
+            "the particles are not centered");
+        pass("hugeAreas");
+    }
+
+    /**
+     * the grid index and the R-tree must find the same object as the linear search for every point,
+     * i.e. the first one added whose area covers the point, even if the areas overlap.
+     */
+    private static void sameIndexes()
+    {
+        WGS84 origin = new WGS84(0.15, 0.84, 450);
+        WGS84 other = new WGS84(0.1500004, 0.8400003, 452);
+        String[] types = {"linear", "grid", "rtree"};
+        Random random = new Random(9);
+        int hits = 0;
+
+        for (int round=0; round < 5; round++) {
+            Index[] indexes = new Index[types.length];
+            for (int i=0; i < types.length; i++) {
+                indexes[i] = Index.newIndex(types[i], origin);
+            }
+
+            int units = 1 + random.nextInt(300);
+            for (int u=0; u < units; u++) {
+                int x = random.nextInt(400) - 200;
+                int y = random.nextInt(400) - 200;
+                int z = random.nextInt(100) - 50;
+                Area area = newArea(u % 2 == 0 ? origin : other, new Cartesian(x, y, z),
+                    new Cartesian(x + random.nextInt(60), y + random.nextInt(60), z + random.nextInt(20)));
+                for (int i=0; i < types.length; i++) {
+                    indexes[i].add((Area) area.clone(), new Integer(u));
+                }
+            }
+
+            for (int q=0; q < 20000; q++) {
+                int x = random.nextInt(500) - 250;
+                int y = random.nextInt(500) - 250;
+                int z = random.nextInt(140) - 70;
+                Object expected = indexes[0].get(x, y, z);
+                if (expected != null) {
+                    hits += 1;
+                }
+                for (int i=1; i < types.length; i++) {
+                    Object found = indexes[i].get(x, y, z);
+                    check(expected == null ? found == null : expected.equals(found),
+                        types[i] + " finds " + found + " instead of " + expected + " at " + x + " " + y + " " + z);
+                }
+            }
+        }
+        check(hits > 0, "no point is covered");
+        pass("sameIndexes");
+    }
+
+    /**
+     * the mass of a box from the summed area table must be the sum of the probabilities of the points of the
+     * box within the area of the PDF, also for boxes which stick out of the area or miss it.
+     */
+    private static void summedMasses()
+    {
+        WGS84 origin = new WGS84(0.15, 0.84, 450);
+        double[][] covariance = {{30, 8, 0}, {8, 20, 3}, {0, 3, 10}};
+        PDF pdf = new AnisotropicGaussDistribution(newArea(origin, new Cartesian(-12, -9, -6),
+            new Cartesian(10, 11, 7)), covariance);
+        SummedAreaTable table = new SummedAreaTable(pdf);
+        Random random = new Random(10);
+
+        for (int round=0; round < 2000; round++) {
+            int x = random.nextInt(40) - 20;
+            int y = random.nextInt(40) - 20;
+            int z = random.nextInt(30) - 15;
+            Cartesian lower = new Cartesian(x, y, z);
+            Cartesian upper = new Cartesian(x + random.nextInt(20), y + random.nextInt(20), z + random.nextInt(15));
+
+            double expected = 0.0;
+            for (int pz = lower.getZ(); pz <= upper.getZ(); pz++) {
+                for (int py = lower.getY(); py <= upper.getY(); py++) {
+                    for (int px = lower.getX(); px <= upper.getX(); px++) {
+                        if (pdf.getArea().contains(px, py, pz)) {
+                            expected += pdf.density(px, py, pz);
+                        }
+                    }
+                }
+            }
+
+            double mass = table.getMass(newArea(origin, lower, upper));
+            check(Math.abs(mass - expected) <= 1e-9 * Math.max(1.0, expected),
+                "mass " + mass + " instead of " + expected + " at " + x + " " + y + " " + z);
+        }
+        pass("summedMasses");
+    }
+
+    /**
+     * the bulk evaluation of a range of a region must yield the point densities, and the outside value for
+     * the points the PDF does not cover. The ranges start and end within layers and rows, and the region
+     * sticks out of the areas of the PDFs.
+     */
+    private static void bulkProbabilities()
+    {
+        WGS84 origin = new WGS84(0.15, 0.84, 450);
+        Random random = new Random(13);
+        double[][] covariance = {{30, 8, 0}, {8, 20, 3}, {0, 3, 10}};
+
+        Area rasterArea = newArea(origin, new Cartesian(-6, -4, -3), new Cartesian(5, 7, 2));
+        double[] raster = new double[rasterArea.getNumberOfPoints()];
+        for (int i=0; i < raster.length; i++) {
+            raster[i] = random.nextDouble();
+        }
+
+        Vector exceptions = new Vector();
+        exceptions.add(new GaussDistribution(newArea(origin, new Cartesian(-8, -8, -4), new Cartesian(-2, -1, 3)),
+            5));
+        exceptions.add(new AnisotropicGaussDistribution(newArea(origin, new Cartesian(2, 0, -5),
+            new Cartesian(9, 6, 0)), covariance));
+        PDF container = null;
+        try {
+            container = new Container(new GaussDistribution(newArea(origin, new Cartesian(-11, -10, -7),
+                new Cartesian(12, 9, 6)), 40), exceptions);
+        } catch (AreaException e) {
+            check(false, "the exceptions do not fit into the master");
+        }
+
+        PDF[] pdfs = {
+            new GaussDistribution(newArea(origin, new Cartesian(-9, -7, -5), new Cartesian(8, 10, 4)), 12),
+            new AnisotropicGaussDistribution(newArea(origin, new Cartesian(-10, -8, -6), new Cartesian(7, 9, 5)),
+                covariance),
+            new RasterDistribution(rasterArea, raster),
+            container
+        };
+        Area region = newArea(origin, new Cartesian(-14, -12, -9), new Cartesian(15, 13, 8));
+        int points = region.getNumberOfPoints();
+        double outside = 1e-7;
+
+        for (int p=0; p < pdfs.length; p++) {
+            PDF pdf = pdfs[p];
+            for (int round=0; round < 50; round++) {
+                int from = random.nextInt(points);
+                int to = from + random.nextInt(points - from + 1);
+                int offset = random.nextInt(5);
+                double[] values = new double[offset + to - from];
+                double[] logs = new double[offset + to - from];
+                pdf.getProbabilities(region, from, to, values, offset, outside);
+                pdf.getLogProbabilities(region, from, to, logs, offset, Math.log(outside));
+
+                for (int i=from; i < to; i++) {
+                    Cartesian point = region.getPoint(i);
+                    double expected = outside;
+                    if (pdf.getArea().contains(point)) {
+                        expected = pdf.density(point.getX(), point.getY(), point.getZ());
+                    }
+                    double value = values[offset + i - from];
+                    double log = logs[offset + i - from];
+                    check(Math.abs(value - expected) <= 1e-9 * expected,
+                        pdf.getClass().getName() + ": " + value + " instead of " + expected + " at " + i);
+                    check(Math.abs(log - Math.log(expected)) <= 1e-9 * Math.max(1.0, Math.abs(log)),
+                        pdf.getClass().getName() + ": log " + log + " instead of " + Math.log(expected) + " at " + i);
+                }
+            }
+        }
+        pass("bulkProbabilities");
+    }
+
+    private static Area newArea(WGS84 origin, Cartesian lower, Cartesian upper)
+    {
+        Vector params = new Vector();
+        params.add(lower);
+        params.add(upper);
+        return Area.newArea(origin, params);
+    }
+
+    private static void check(boolean condition, String message)
+    {
+        if (! condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static void pass(String name)
+    {
+        System.out.println("ok " + name);
+    }
+}
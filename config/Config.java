@@ -40,6 +40,19 @@ public class Config {
                 return 20.0;
             }
         }
+        public static class PooledPlugin {
+            /**
+             * returns the number of threads which run the PDF calculations of all pooled plugins.
+             * This bounds the number of threads, no matter how many plugins are loaded. Plugins which wait for
+             * their sensors occupy a thread meanwhile, so this should be at least the number of plugins which
+             * are expected to wait at the same time.
+             * @return the number of threads
+             */
+            public static int getPoolSize()
+            {
+                return Math.max(2, Runtime.getRuntime().availableProcessors());
+            }
+        }
     }
     public static class coordinates {
         public static class Cartesian {
@@ -67,6 +80,107 @@ public class Config {
             {
                 return 2000;
             }
+
+            /**
+             * returns the period of the streaming mode in milliseconds.
+             * The plugins are triggered this often, and every epoch has this time for delivering its PDFs.
+             * @return the period in milliseconds
+             */
+            public static long getPeriod()
+            {
+                return 200;
+            }
+
+            /**
+             * returns the fusion engine of Locator.getFusedPdf.
+             * This is either "grid" for the CompoundPdf, "particles" for the ParticlePdf or "mapped" for the
+             * MappedCompoundPdf. The ParticlePdf does not depend on the size of the area, so it suits large
+             * areas and fine resolutions. The MappedCompoundPdf evaluates every point like the grid, but keeps
+             * the raster in a memory mapped file instead of the heap.
+             * @return the fusion engine
+             */
+            public static String getEngine()
+            {
+                return "grid";
+            }
+        }
+        public static class MappedCompoundPdf {
+            /**
+             * returns the number of points which are evaluated on the heap at once.
+             * This bounds the heap a MappedCompoundPdf needs per job, whatever the shape of the area.
+             * @return the number of points of a slab
+             */
+            public static int getSlabSize()
+            {
+                return 1 << 20;
+            }
+        }
+        public static class ParticlePdf {
+            /**
+             * returns the number of particles of a ParticlePdf.
+             * The cost of the fusion is proportional to this number.
+             * @return the number of particles
+             */
+            public static int getNumberOfParticles()
+            {
+                return 4096;
+            }
+
+            /**
+             * returns how far particles are moved at random after resampling, in grid units per axis.
+             * Without it the particles could only be at the points of the first draw.
+             * @return the maximum offset, 0 for none
+             */
+            public static int getJitter()
+            {
+                return 1;
+            }
+        }
+        public static class Tracker {
+            /**
+             * returns the variance of the motion of the target between two epochs in grid units ^ 2.
+             * The prior of an epoch is the posterior of the last one, blurred by a gauss kernel with this
+             * variance on every axis.
+             * @return the variance, 0 for a target which does not move
+             */
+            public static double getMotionVariance()
+            {
+                return 16.0;
+            }
+
+            /**
+             * returns the probability mass of the posterior which is kept for the prior.
+             * The prior is restricted to a cuboid holding this much of the mass, and so is the next compound
+             * PDF. The smaller the value, the smaller the volume which is evaluated.
+             * @return the mass, between 0 and 1
+             */
+            public static double getPriorMass()
+            {
+                return 0.999;
+            }
+        }
+        public static class PyramidSearch {
+            /**
+             * returns the step of the coarse grid of the pyramid search in grid units.
+             * The point of maximum probability is found reliably if the compound probability does not have
+             * more local maxima than the beam width within this distance. The coarse grid has volume / step ^ 3
+             * points, so a larger step is cheaper, but less reliable.
+             * @return the coarse step
+             */
+            public static int getCoarseStep()
+            {
+                return 8;
+            }
+
+            /**
+             * returns the number of points which are refined on every level of the pyramid search.
+             * The bigger the beam, the more local maxima are followed, at the cost of more evaluations.
+             * @return the beam width
+             */
+            public static int getBeamWidth()
+            {
+                return 4;
+            }
         }
     }
     public static class pdf {
@@ -81,6 +195,111 @@ public class Config {
             {
                 return 0.00000001;
             }
+
+            /**
+             * returns whether compound PDFs are calculated in log space.
+             * Multiplying many small probabilities underflows to zero. In log space the logarithms of the 
+             * probabilities are summed up instead and the norm is calculated by the log-sum-exp method.
+             * @return true for log space, false for plain probabilities
+             */
+            public static boolean useLogSpace()
+            {
+                return false;
+            }
+
+            /**
+             * returns whether compound PDFs are evaluated only where all PDFs overlap.
+             * Outside the intersection of the PDFs' areas at least one PDF contributes epsilon only. If set, 
+             * these points are not evaluated but considered to have the constant value epsilon ^ n, where n is
+             * the number of PDFs. If the intersection is empty the whole area is evaluated anyway.
+             * @return true to evaluate the intersection only, false to evaluate the whole area
+             */
+            public static boolean restrictToIntersection()
+            {
+                return false;
+            }
+
+            /**
+             * returns the number of slabs the area of a compound PDF is split into.
+             * The slabs are evaluated in parallel by the default worker pool. A value of 1 evaluates
+             * the whole area in the calling thread.
+             * @return the number of slabs
+             */
+            public static int getNumberOfSlabs()
+            {
+                return Runtime.getRuntime().availableProcessors();
+            }
+
+            /**
+             * returns whether PDFs which are all gauss distributions are fused in closed form.
+             * The mean and the point of maximum probability are calculated without evaluating the area, see
+             * locator.GaussianProductPdf. The CompoundPdfBuilder then defers folding as long as all PDFs
+             * are Gaussian.
+             * @return true to use the closed form where possible
+             */
+            public static boolean useClosedForm()
+            {
+                return true;
+            }
+        }
+        public static class TemplateCache {
+            /**
+             * returns the maximum number of kernel templates which are cached.
+             * A GaussDistribution needs one template per axis, so this should be a multiple of three.
+             * @return the capacity of the default template cache
+             */
+            public static int getCapacity()
+            {
+                return 96;
+            }
+        }
+    }
+    public static class utils {
+        public static class index {
+            public static class Index {
+                /**
+                 * returns the implementation of new index objects.
+                 * This is either "linear", "grid", "rtree" or "auto". The latter chooses by the expected
+                 * number of objects.
+                 * @return the type of index
+                 */
+                public static String getType()
+                {
+                    return "auto";
+                }
+
+                /**
+                 * returns the maximum number of objects for which "auto" chooses a linear search.
+                 * @return the number of objects
+                 */
+                public static int getLinearSearchLimit()
+                {
+                    return 8;
+                }
+            }
+            public static class GridIndex {
+                /**
+                 * returns the edge length of the cells of a grid index in grid units.
+                 * It should be in the order of the size of the indexed areas.
+                 * @return the edge length of a cell
+                 */
+                public static int getCellSize()
+                {
+                    return 32;
+                }
+            }
+        }
+        public static class pool {
+            public static class WorkerPool {
+                /**
+                 * returns the number of threads of the default worker pool.
+                 * @return the number of worker threads
+                 */
+                public static int getSize()
+                {
+                    return Runtime.getRuntime().availableProcessors();
+                }
+            }
         }
     }
 }
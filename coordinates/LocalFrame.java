@@ -0,0 +1,34 @@
+package coordinates;
+
+/**
+ * A local reference frame for one fusion epoch.
+ * All PDFs of an epoch are moved to the origin of the frame once, so afterwards their areas share the very
+ * same origin and all area operations are pure integer arithmetic, see Cuboid.move.
+ * The grid axes are those of WGS84.diff.
+ */
+public class LocalFrame {
+    /**
+     * The constructor.
+     * @param origin the origin of the frame, usually the origin of the first PDF of an epoch
+     */
+    public LocalFrame(WGS84 origin)
+    {
+        this.origin = origin;
+    }
+
+    public WGS84 getOrigin()
+    {
+        return origin;
+    }
+
+    /**
+     * get the position of a point within the frame.
+     * @return a new Cartesian object
+     */
+    public Cartesian toLocal(WGS84 point)
+    {
+        return point.diff(origin);
+    }
+
+    private WGS84 origin;
+}
@@ -15,6 +15,28 @@ public class WGS84 {
         this.longitude = longitude;
         this.latitude = latitude;
         this.altitude = altitude;
+
+        // the point never changes, so it is converted once
+        int[] ecef = new int[3];
+        convertToCartesian(longitude, latitude, altitude, ecef);
+        x = ecef[0];
+        y = ecef[1];
+        z = ecef[2];
+    }
+
+    public double getLongitude()
+    {
+        return longitude;
+    }
+
+    public double getLatitude()
+    {
+        return latitude;
+    }
+
+    public double getAltitude()
+    {
+        return altitude;
     }
 
     /**
@@ -24,44 +46,71 @@ public class WGS84 {
      */
     public Cartesian diff(WGS84 that)
     {
-        Cartesian point1 = this.convertToCartesian();
-        Cartesian point2 = that.convertToCartesian();
-
         int res = Config.coordinates.Cartesian.getResolution();
 
-        int x = (point1.getX() - point2.getX()) * 100 / res;
-        int y = (point1.getY() - point2.getY()) * 100 / res;
-        int z = (point1.getZ() - point2.getZ()) * 100 / res;
+        int x = (this.x - that.x) * 100 / res;
+        int y = (this.y - that.y) * 100 / res;
+        int z = (this.z - that.z) * 100 / res;
 
         return new Cartesian(x,y,z);
     }
 
+    /**
+     * Calculate the differences between this point and many others in one pass.
+     * The result for every point is the same as diff would return, but no objects are created. This is meant
+     * for converting long recordings of fixes.
+     * @param longitudes the longitudes of the other points
+     * @param latitudes the latitudes of the other points
+     * @param altitudes the altitudes of the other points
+     * @param xs the array for the x components of the difference vectors
+     * @param ys the array for the y components of the difference vectors
+     * @param zs the array for the z components of the difference vectors
+     */
+    public void diff(double[] longitudes, double[] latitudes, double[] altitudes, int[] xs, int[] ys, int[] zs)
+    {
+        int res = Config.coordinates.Cartesian.getResolution();
+        int[] ecef = new int[3];
+
+        for (int i=0; i < longitudes.length; i++) {
+            convertToCartesian(longitudes[i], latitudes[i], altitudes[i], ecef);
+            xs[i] = (x - ecef[0]) * 100 / res;
+            ys[i] = (y - ecef[1]) * 100 / res;
+            zs[i] = (z - ecef[2]) * 100 / res;
+        }
+    }
+
     /**
      * This function is needed by the diff function.
      * This is voodoo. The formula is taken from the paper:
      * "Software Representation for Heterogeneous Location Data Sources Within A Probabilistic Framework" 
      * by Michael Angermann, Jens Kammann, Patrick Robertson, Alexander Stainga, Thomas Strang 
      * of the Institute for Communications and Navigation, German Aerospace Center (DLR).
-     * @return Cartesian coordinates in meter with the center of the earth as origin
+     * @param ecef the array for the Cartesian coordinates in meter with the center of the earth as origin
      */
-    private Cartesian convertToCartesian()
+    private static void convertToCartesian(double longitude, double latitude, double altitude, int[] ecef)
     {
         // this is magic ;-)
         
-        final long a = 6378137;
-        final double f = 1.0 / 198.257223536;
         double sinlat = Math.sin(latitude);
         double coslat = Math.cos(latitude);
         double coslon = Math.cos(longitude);
-        double N = a / Math.sqrt(1 - f * (2 - f) * sinlat * sinlat);
+        double N = A / Math.sqrt(1 - F * (2 - F) * sinlat * sinlat);
 
         double x = (N + altitude) * coslat * coslon;
         double y = (N + altitude) * coslat * coslon;
-        double z = ((1 - Math.exp(2)) * N + altitude) * sinlat;
+        double z = (E * N + altitude) * sinlat;
 
-        return new Cartesian((int) x, (int) y, (int) z);
+        ecef[0] = (int) x;
+        ecef[1] = (int) y;
+        ecef[2] = (int) z;
     }
 
-    private double longitude, latitude, altitude;
-}
+    private static final long A = 6378137;
+    private static final double F = 1.0 / 198.257223536;
+    private static final double E = 1 - Math.exp(2);
 
+    private final double longitude, latitude, altitude;
+
+    /** the Cartesian coordinates in meter with the center of the earth as origin */
+    private final int x, y, z;
+}
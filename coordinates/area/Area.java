@@ -107,7 +107,112 @@ abstract public class Area implements Cloneable {
      * check if the given vector lies within this area.
      * @return true if it does, flase otherwise
      */
-    public abstract boolean contains(Cartesian point);
+    public boolean contains(Cartesian point)
+    {
+        return contains(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * check if the given vector lies within this area.
+     * This is the same as contains(Cartesian), but does not need an object.
+     * @return true if it does, false otherwise
+     */
+    public abstract boolean contains(int x, int y, int z);
+
+    /**
+     * get the lower, left, front corner of the smallest cuboid which contains the area.
+     * @return a new Cartesian object
+     */
+    public abstract Cartesian getLowerBound();
+
+    /**
+     * get the upper, right, back corner of the smallest cuboid which contains the area.
+     * @return a new Cartesian object
+     */
+    public abstract Cartesian getUpperBound();
+
+    /**
+     * get the number of points the iterator of this area returns.
+     * @return the number of grid points covered by the area
+     * @throws ArithmeticException if the number exceeds the range of int, see getNumberOfVoxels
+     */
+    public abstract int getNumberOfPoints();
+
+    /**
+     * get the number of points the iterator of this area returns, for areas of any size.
+     * @return the number of grid points covered by the area
+     */
+    public abstract long getNumberOfVoxels();
+
+    /**
+     * get the position of the given point in the order of the iterator.
+     * This allows to store values for all points of the area in a flat array.
+     * @return the index of the point, or -1 if the area does not contain it
+     */
+    public int indexOf(Cartesian point)
+    {
+        return indexOf(point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * get the position of the given point in the order of the iterator.
+     * This is the same as indexOf(Cartesian), but does not need an object.
+     * @return the index of the point, or -1 if the area does not contain it
+     * @throws ArithmeticException if the index exceeds the range of int, see indexOfVoxel
+     */
+    public abstract int indexOf(int x, int y, int z);
+
+    /**
+     * get the position of the given point in the order of the iterator, for areas of any size.
+     * @return the index of the point, or -1 if the area does not contain it
+     */
+    public abstract long indexOfVoxel(int x, int y, int z);
+
+    /**
+     * get the point at the given position in the order of the iterator.
+     * This is the inverse of indexOf.
+     * @param index the position, must be between 0 and getNumberOfPoints() - 1
+     * @return a new Cartesian object
+     */
+    public Cartesian getPoint(int index)
+    {
+        return getVoxel(index);
+    }
+
+    /**
+     * get the point at the given position in the order of the iterator, for areas of any size.
+     * This is the inverse of indexOfVoxel.
+     * @param index the position, must be between 0 and getNumberOfVoxels() - 1
+     * @return a new Cartesian object
+     */
+    public abstract Cartesian getVoxel(long index);
+
+    /**
+     * visit all points of the area.
+     * @param visitor the callback which is called for every point in the order of the iterator
+     */
+    public void forEachVoxel(VoxelVisitor visitor)
+    {
+        forEachVoxel(visitor, 0, getNumberOfPoints());
+    }
+
+    /**
+     * visit a range of points of the area.
+     * The range refers to the order of the iterator, see indexOf. Disjoint ranges can be visited in parallel.
+     * @param visitor the callback which is called for every point of the range
+     * @param from the index of the first point
+     * @param to the index after the last point
+     */
+    public abstract void forEachVoxel(VoxelVisitor visitor, int from, int to);
+
+    /**
+     * visit a range of points of the area line by line.
+     * The range refers to the order of the iterator, see indexOf. The first and the last line may be partial.
+     * @param visitor the callback which is called for every scan line of the range
+     * @param from the index of the first point
+     * @param to the index after the last point
+     */
+    public abstract void forEachScanLine(ScanLineVisitor visitor, int from, int to);
 
     protected WGS84 origin;
 }
@@ -97,6 +97,7 @@ class Cuboid extends Area {
 
     /**
      * The constructor.
+     * The corners are copied, as move modifies them and the caller may pass the same corners to many areas.
      * @param origin The origin of the cuboid
      * @param lowerLeftFront the lower, left, front corner 
      * @param upperRightBack the upper, right, back corner
@@ -105,12 +106,14 @@ class Cuboid extends Area {
     {
         this.origin = origin;
         
-        if (! (lowerLeftFront.compareTo(upperRightBack) < 0)) {
+        if (lowerLeftFront != null && ! (lowerLeftFront.compareTo(upperRightBack) < 0)) {
             throw new AssertionError();
         }
         
-        this.lowerLeftFront = lowerLeftFront;
-        this.upperRightBack = upperRightBack;
+        if (lowerLeftFront != null) {
+            this.lowerLeftFront = new Cartesian(lowerLeftFront.getX(), lowerLeftFront.getY(), lowerLeftFront.getZ());
+            this.upperRightBack = new Cartesian(upperRightBack.getX(), upperRightBack.getY(), upperRightBack.getZ());
+        }
     }
     
     /**
@@ -125,6 +128,21 @@ class Cuboid extends Area {
     
     /* ** See the documentation of the Area interface for descriptions of the following functions ** */
 
+    /**
+     * The clone function.
+     * The corners are copied as well, as move modifies them.
+     */
+    public Object clone()
+    {
+        Cuboid that = (Cuboid) super.clone();
+        if (! isEmpty()) {
+            that.lowerLeftFront = getLowerBound();
+            that.upperRightBack = getUpperBound();
+        }
+
+        return that;
+    }
+
     public java.util.Iterator iterator()
     {
         return new Iterator(lowerLeftFront, upperRightBack);
@@ -132,16 +150,21 @@ class Cuboid extends Area {
     
     public void move(WGS84 newOrigin)
     {
-        Cartesian diff = origin.diff(newOrigin);
-        lowerLeftFront.move(diff);
-        upperRightBack.move(diff);
+        if (newOrigin == origin) {
+            return;
+        }
+
+        if (! isEmpty()) {
+            Cartesian diff = origin.diff(newOrigin);
+            lowerLeftFront.move(diff);
+            upperRightBack.move(diff);
+        }
         origin = newOrigin;
     }
     
     public void expand(Area area) 
     {
-        Cuboid that = (Cuboid) area.clone();
-        that.move(origin);
+        Cuboid that = inThisOrigin(area);
 
         int x, y, z;
 
@@ -160,17 +183,11 @@ class Cuboid extends Area {
     
     public Area intersect(Area with)
     {
-        Cuboid that = (Cuboid) with.clone();
-
-        that.move(origin);
-        
-        if ((this.lowerLeftFront.compareTo(that.upperRightBack) > 0)
-          ||(that.lowerLeftFront.compareTo(this.upperRightBack) > 0))   
-        {
-            // intersection is emtpy
-            return new Cuboid(origin);    
+        if (isEmpty() || with.isEmpty()) {
+            return new Cuboid(origin);
         }
- 
+
+        Cuboid that = inThisOrigin(with);
         
         int x, y, z;
         
@@ -184,9 +201,30 @@ class Cuboid extends Area {
         z = Math.min(this.upperRightBack.getZ(), that.upperRightBack.getZ());
         Cartesian newUpperRightBack = new Cartesian(x,y,z);
 
+        if (newLowerLeftFront.getX() > x || newLowerLeftFront.getY() > y || newLowerLeftFront.getZ() > z) {
+            // intersection is emtpy
+            return new Cuboid(origin);    
+        }
+
         return new Cuboid(origin, newLowerLeftFront, newUpperRightBack);
     }
 
+    /**
+     * get the given area relative to the origin of this one.
+     * Areas of the same LocalFrame share their origin, so they are used as they are.
+     * @return the area itself, or a moved copy
+     */
+    private Cuboid inThisOrigin(Area area)
+    {
+        Cuboid that = (Cuboid) area;
+        if (that.origin != origin) {
+            that = (Cuboid) that.clone();
+            that.move(origin);
+        }
+
+        return that;
+    }
+
     public long getVolume()
     {
         if (isEmpty()) {
@@ -197,7 +235,8 @@ class Cuboid extends Area {
         int diffY = upperRightBack.getY() - lowerLeftFront.getY();
         int diffZ = upperRightBack.getZ() - lowerLeftFront.getZ();
 
-        return diffX * diffY * diffZ;
+        // the product exceeds the range of int for large areas
+        return (long) diffX * diffY * diffZ;
     }
 
     public boolean isEmpty()
@@ -228,15 +267,16 @@ class Cuboid extends Area {
         return area.isSubsetOf((Area) this);
     }
 
-    public boolean contains(Cartesian point)
+    public boolean contains(int x, int y, int z)
     {
-        if ((lowerLeftFront.compareTo(point) < 0) 
-          &&(upperRightBack.compareTo(point) > 0))
-        {
-            return true;
-        } else {
+        if (isEmpty()) {
             return false;
         }
+
+        // both corners belong to the cuboid, just like for the iterator
+        return lowerLeftFront.getX() <= x && x <= upperRightBack.getX()
+            && lowerLeftFront.getY() <= y && y <= upperRightBack.getY()
+            && lowerLeftFront.getZ() <= z && z <= upperRightBack.getZ();
     }
 
     public boolean contains(WGS84 point)
@@ -244,6 +284,152 @@ class Cuboid extends Area {
         return contains(origin.diff(point));
     }
 
+    public Cartesian getLowerBound()
+    {
+        return new Cartesian(lowerLeftFront.getX(), lowerLeftFront.getY(), lowerLeftFront.getZ());
+    }
+
+    public Cartesian getUpperBound()
+    {
+        return new Cartesian(upperRightBack.getX(), upperRightBack.getY(), upperRightBack.getZ());
+    }
+
+    public int getNumberOfPoints()
+    {
+        return toInt(getNumberOfVoxels());
+    }
+
+    public long getNumberOfVoxels()
+    {
+        if (isEmpty()) {
+            return 0;
+        }
+
+        int sizeX = upperRightBack.getX() - lowerLeftFront.getX() + 1;
+        int sizeY = upperRightBack.getY() - lowerLeftFront.getY() + 1;
+        int sizeZ = upperRightBack.getZ() - lowerLeftFront.getZ() + 1;
+
+        return (long) sizeX * sizeY * sizeZ;
+    }
+
+    public int indexOf(int px, int py, int pz)
+    {
+        return toInt(indexOfVoxel(px, py, pz));
+    }
+
+    public long indexOfVoxel(int px, int py, int pz)
+    {
+        if (isEmpty()) {
+            return -1;
+        }
+
+        // the iterator runs along x first, then y, then z
+        int sizeX = upperRightBack.getX() - lowerLeftFront.getX() + 1;
+        int sizeY = upperRightBack.getY() - lowerLeftFront.getY() + 1;
+        int sizeZ = upperRightBack.getZ() - lowerLeftFront.getZ() + 1;
+
+        int x = px - lowerLeftFront.getX();
+        int y = py - lowerLeftFront.getY();
+        int z = pz - lowerLeftFront.getZ();
+
+        if (x < 0 || x >= sizeX || y < 0 || y >= sizeY || z < 0 || z >= sizeZ) {
+            return -1;
+        }
+
+        return ((long) z * sizeY + y) * sizeX + x;
+    }
+
+    public Cartesian getVoxel(long index)
+    {
+        int sizeX = upperRightBack.getX() - lowerLeftFront.getX() + 1;
+        int sizeY = upperRightBack.getY() - lowerLeftFront.getY() + 1;
+
+        int x = (int) (index % sizeX);
+        int y = (int) (index / sizeX % sizeY);
+        int z = (int) (index / sizeX / sizeY);
+
+        return new Cartesian(lowerLeftFront.getX() + x, lowerLeftFront.getY() + y, lowerLeftFront.getZ() + z);
+    }
+
+    public void forEachScanLine(ScanLineVisitor visitor, int from, int to)
+    {
+        if (isEmpty() || from >= to) {
+            return;
+        }
+
+        int lowX = lowerLeftFront.getX();
+        int lowY = lowerLeftFront.getY();
+        int lowZ = lowerLeftFront.getZ();
+        int sizeX = upperRightBack.getX() - lowX + 1;
+        int sizeY = upperRightBack.getY() - lowY + 1;
+
+        int x = from % sizeX;
+        int y = (from / sizeX) % sizeY;
+        int z = from / (sizeX * sizeY);
+
+        int index = from;
+        while (index < to) {
+            int run = Math.min(sizeX - x, to - index);
+            visitor.visit(lowX + x, lowX + x + run - 1, lowY + y, lowZ + z, index);
+
+            index += run;
+            x = 0;
+            y += 1;
+            if (y == sizeY) {
+                y = 0;
+                z += 1;
+            }
+        }
+    }
+
+    public void forEachVoxel(VoxelVisitor visitor, int from, int to)
+    {
+        if (isEmpty() || from >= to) {
+            return;
+        }
+
+        int lowX = lowerLeftFront.getX();
+        int lowY = lowerLeftFront.getY();
+        int lowZ = lowerLeftFront.getZ();
+        int sizeX = upperRightBack.getX() - lowX + 1;
+        int sizeY = upperRightBack.getY() - lowY + 1;
+
+        int x = from % sizeX;
+        int y = (from / sizeX) % sizeY;
+        int z = from / (sizeX * sizeY);
+
+        // one scan line along x at a time
+        int count = to - from;
+        while (count > 0) {
+            int run = Math.min(sizeX - x, count);
+            int endX = lowX + x + run;
+            for (int px = lowX + x; px < endX; px++) {
+                visitor.visit(px, lowY + y, lowZ + z);
+            }
+
+            count -= run;
+            x = 0;
+            y += 1;
+            if (y == sizeY) {
+                y = 0;
+                z += 1;
+            }
+        }
+    }
+
+    /**
+     * @return the given count or index as int
+     * @throws ArithmeticException if the area is too large to be indexed by int
+     */
+    private static int toInt(long value)
+    {
+        if (value > Integer.MAX_VALUE) {
+            throw new ArithmeticException("the area has more points than an int can index: " + value);
+        }
+
+        return (int) value;
+    }
+
     private Cartesian lowerLeftFront;
     private Cartesian upperRightBack;
 }
@@ -0,0 +1,18 @@
+package coordinates.area;
+
+/**
+ * A callback for visiting the points of an area line by line.
+ * A scan line is a run of points along the x axis. Visiting whole lines allows to hoist everything that only
+ * depends on y and z out of the innermost loop.
+ */
+public interface ScanLineVisitor {
+    /**
+     * called for every visited scan line, in the order of the area's iterator.
+     * @param fromX the x coordinate of the first point of the line
+     * @param toX the x coordinate of the last point of the line
+     * @param y the y coordinate of the line
+     * @param z the z coordinate of the line
+     * @param index the index of the first point of the line within the area, see Area.indexOf
+     */
+    public void visit(int fromX, int toX, int y, int z, int index);
+}
@@ -0,0 +1,13 @@
+package coordinates.area;
+
+/**
+ * A callback for visiting the points of an area.
+ * In contrast to the iterator no Cartesian objects and no casts are involved, so it is suitable for inner
+ * loops.
+ */
+public interface VoxelVisitor {
+    /**
+     * called for every visited point, in the order of the area's iterator.
+     */
+    public void visit(int x, int y, int z);
+}
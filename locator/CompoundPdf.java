@@ -1,60 +1,98 @@
 package locator; 
 
 import java.util.Vector;
-import coordinates.area.AreaException;
 import coordinates.area.Area;
-import java.util.Iterator;
 import coordinates.Cartesian;
 import config.Config;
-import logger.Logger;
 
 import pdf.PDF;
-import pdf.Probability;
+import utils.pool.Batch;
+import utils.pool.WorkerPool;
 
 /**
  * A compound PDF over some PFDs.
  * The formula is: $ \overline{p(x)} = frac{\prod_{i=1}^{n}p_i(x)}{\sum_x\sum_y\sum_z \prod^{n}_{i=1} p_i(x)}$
- * The implementation is not efficient. 
+ * The compound probabilities are calculated once and stored in a raster, so lookups are plain array reads.
+ * The raster either covers the whole area or only the intersection of the PDFs' areas, see
+ * Config.pdf.CompoundPdf.restrictToIntersection. In the latter case all points outside the intersection
+ * are considered to have the constant value epsilon ^ n, which is accounted for in the norm.
  */
-public class CompoundPdf extends PDF {
+public class CompoundPdf extends FusedPdf {
     /**
      * The constructor.
+     * The compound probabilities are evaluated once for every point of the area and kept in a raster.
      * @param pdfs vector of PDF objects
      */
     public CompoundPdf(Vector pdfs)
+    {
+        this(pdfs, Config.pdf.CompoundPdf.restrictToIntersection());
+    }
+
+    /**
+     * The constructor.
+     * @param pdfs vector of PDF objects
+     * @param intersect whether the raster covers only the intersection of the PDFs' areas, regardless of the
+     * config. The Tracker uses this to restrict the compound PDF to the high-mass region of its prior.
+     */
+    public CompoundPdf(Vector pdfs, boolean intersect)
     {
         super(calcArea(pdfs));
         this.pdfs = pdfs;
+        logSpace = Config.pdf.CompoundPdf.useLogSpace();
+        domain = calcDomain(intersect);
+        raster = new double[domain.getNumberOfPoints()];
+        runSlabs(true);
+        calcNormAndMax();
+    }
+
+    /**
+     * The constructor for an already evaluated raster.
+     * This is used by the CompoundPdfBuilder.
+     * @param area the area of the compound PDF
+     * @param pdfs vector of PDF objects
+     * @param raster the unnormalized compound probabilities of all points of the area
+     */
+    CompoundPdf(Area area, Vector pdfs, double[] raster)
+    {
+        super(area);
+        this.pdfs = pdfs;
+        this.raster = raster;
+        logSpace = Config.pdf.CompoundPdf.useLogSpace();
+        domain = area;
+        runSlabs(false);
         calcNormAndMax();
     }
 
     /**
      * @return the compound probability for the given point
      */
-    public Probability getProbability(Cartesian coordinates) throws AreaException
+    public double density(int x, int y, int z)
     {
-        checkArea(coordinates);
-        Probability p = _getProbability(coordinates);     
-        p.scale(norm);
-        return p;
+        if (logSpace) {
+            return Math.exp(getRasterValue(x, y, z) - norm);
+        }
+        return getRasterValue(x, y, z) * norm;
     }
 
-    private Probability _getProbability(Cartesian coordinates) throws AreaException
+    public double logDensity(int x, int y, int z)
     {
-        Iterator i = pdfs.iterator();
-        Probability p = new Probability(1.0);
-        Probability epsilon = new Probability(Config.pdf.CompoundPdf.getEpsilon());    
-
-        while(i.hasNext()) {
-            PDF pdf = (PDF) i.next();
-            try {
-                p.scale(pdf.getProbability(coordinates));
-            } catch (AreaException e) {
-                p.scale(epsilon);
-            }
+        if (logSpace) {
+            return getRasterValue(x, y, z) - norm;
+        }
+        return Math.log(getRasterValue(x, y, z) * norm);
+    }
+
+    /**
+     * @return the unnormalized value of the given point of the area
+     */
+    private double getRasterValue(int x, int y, int z)
+    {
+        int index = domain.indexOf(x, y, z);
+        if (index == -1) {
+            return outside;
         }
 
-        return p;
+        return raster[index];
     }
 
     /**
@@ -65,16 +103,57 @@ public class CompoundPdf extends PDF {
         return pointOfMaxProbability;
     }
 
+    /**
+     * @return the part of the area which was evaluated point by point, see calcDomain
+     */
+    Area getDomain()
+    {
+        return (Area) domain.clone();
+    }
+
+    /**
+     * @return the compound probabilities of all points of the domain, in the order of its iterator
+     */
+    double[] getDomainProbabilities()
+    {
+        double[] values = new double[raster.length];
+        for (int i=0; i < values.length; i++) {
+            if (logSpace) {
+                values[i] = Math.exp(raster[i] - norm);
+            } else {
+                values[i] = raster[i] * norm;
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * moves the domain, the point of maximum probability and the given PDFs along with the area.
+     */
+    protected void moved(Cartesian shift)
+    {
+        if (domain != area) {
+            domain.move(area.getOrigin());
+        }
+        if (pointOfMaxProbability != null) {
+            pointOfMaxProbability.move(shift);
+        }
+        for (int i=0; i < pdfs.size(); i++) {
+            ((PDF) pdfs.elementAt(i)).move(area.getOrigin());
+        }
+    }
+
     /**
      * determines the area of the compound PFDs, which includes the areas of all given PDFs.
      */
-    private static Area calcArea(Vector pdfs)
+    static Area calcArea(Vector pdfs)
     {
         if (pdfs.size() == 0) {
             return null;
         }
 
-        Area area = ((PDF)pdfs.elementAt(0)).getArea();
+        Area area = (Area) ((PDF)pdfs.elementAt(0)).getArea().clone();
         for (int i=1; i < pdfs.size(); i++) {
             area.expand(((PDF)pdfs.elementAt(i)).getArea());
         }
@@ -83,40 +162,193 @@ public class CompoundPdf extends PDF {
     }
 
     /**
-     * calculate the norm factor and the point of the maxium probability
+     * determines the part of the area which is evaluated point by point.
+     * This is the intersection of the areas of all PDFs if so requested and if it is not empty.
+     * Otherwise it is the whole area.
+     */
+    private Area calcDomain(boolean intersect)
+    {
+        double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+        if (logSpace) {
+            outside = pdfs.size() * Math.log(epsilon);
+        } else {
+            outside = Math.pow(epsilon, pdfs.size());
+        }
+
+        if (! intersect) {
+            return area;
+        }
+
+        Area intersection = area;
+        for (int i=0; i < pdfs.size(); i++) {
+            intersection = intersection.intersect(((PDF)pdfs.elementAt(i)).getArea());
+            if (intersection.isEmpty()) {
+                return area;
+            }
+        }
+
+        return intersection;
+    }
+
+    /**
+     * evaluate the unnormalized compound probability for every point of the domain.
+     * The values are stored in the order of the domain's iterator, see Area.indexOf.
+     * In log space mode the raster holds the logarithms of the values.
+     * The raster is split into slabs of contiguous indices which are processed in parallel.
+     * @param evaluate true to evaluate the raster, false if it is filled already and only the partial
+     * sums and maxima are needed
+     */
+    private void runSlabs(boolean evaluate)
+    {
+        int points = raster.length;
+        int parts = Math.max(1, Math.min(points, Config.pdf.CompoundPdf.getNumberOfSlabs()));
+
+        slabs = new Slab[parts];
+        Batch batch = new Batch(WorkerPool.getDefault());
+        for (int i=0; i < parts; i++) {
+            int from = (int) ((long) points * i / parts);
+            int to = (int) ((long) points * (i + 1) / parts);
+            slabs[i] = new Slab(from, to, evaluate);
+            batch.add(slabs[i]);
+        }
+        batch.run();
+    }
+
+    /**
+     * calculate the norm factor and the point of the maxium probability.
+     * The partial results of the slabs are merged in the order of the slabs, so the result does not
+     * depend on the order in which the slabs were finished.
+     * In log space mode the norm is the logarithm of the sum, calculated by the log-sum-exp method.
+     * The points outside the domain contribute their constant value.
      */
     private void calcNormAndMax()
     {
-        Probability prob = new Probability(0.0);
-        pointOfMaxProbability = new Cartesian(0,0,0);
-        max = new Probability(0.0);
+        double sum = 0.0;
+        int maxIndex = 0;
+        long outsidePoints = area.getNumberOfVoxels() - domain.getNumberOfPoints();
         
-        Iterator i = area.iterator();
-        while(i.hasNext()) {
-            Cartesian coords = (Cartesian) i.next();
-            Probability p;
-            try {
-                p = _getProbability(coords);
-            } catch (AreaException e) {
-                Logger.fatal("CompoundPdf", "calcNormAndMax", "this should never happen error");
-                return;
+        for (int i=0; i < slabs.length; i++) {
+            if (raster[slabs[i].maxIndex] > raster[maxIndex]) {
+                maxIndex = slabs[i].maxIndex;
             }
-            
-            prob.add(p); 
-            if (p.compareTo(max) > 0) {
-                max = p;
-                pointOfMaxProbability.setX(coords.getX());
-                pointOfMaxProbability.setY(coords.getY());
-                pointOfMaxProbability.setZ(coords.getZ());
+        }
+
+        if (logSpace) {
+            // the partial sums are relative to the maximum of their slab
+            double max = raster[maxIndex];
+            for (int i=0; i < slabs.length; i++) {
+                sum += slabs[i].sum * Math.exp(raster[slabs[i].maxIndex] - max);
             }
+            sum += outsidePoints * Math.exp(outside - max);
+            norm = max + Math.log(sum);
+        } else {
+            for (int i=0; i < slabs.length; i++) {
+                sum += slabs[i].sum;
+            }
+            sum += outsidePoints * outside;
+            norm = 1.0 / sum;
         }
+        slabs = null;
         
-        norm = prob.reciprocal();
+        pointOfMaxProbability = domain.getPoint(maxIndex);
+    }
+
+    /**
+     * a part of the area which is evaluated as one job.
+     * Besides filling its range of the raster it determines the partial sum and the partial maximum.
+     * In log space mode the partial sum is taken relative to the partial maximum to avoid an underflow.
+     */
+    private class Slab implements Runnable {
+        Slab(int from, int to, boolean evaluate)
+        {
+            this.from = from;
+            this.to = to;
+            this.evaluate = evaluate;
+        }
+
+        public void run()
+        {
+            if (evaluate) {
+                evaluate();
+            }
+            reduce();
+        }
+
+        /**
+         * evaluate the PDFs one after the other in bulk and combine them.
+         * Points a PDF does not cover get epsilon, without any exception thrown.
+         */
+        private void evaluate()
+        {
+            double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+            double outside = logSpace ? Math.log(epsilon) : epsilon;
+            double[] values = null;
+
+            for (int i=0; i < pdfs.size(); i++) {
+                PDF pdf = (PDF) pdfs.elementAt(i);
+                if (i == 0) {
+                    evaluate(pdf, raster, from, outside);
+                    continue;
+                }
+
+                if (values == null) {
+                    values = new double[to - from];
+                }
+                evaluate(pdf, values, 0, outside);
+                for (int j=0; j < values.length; j++) {
+                    if (logSpace) {
+                        raster[from + j] += values[j];
+                    } else {
+                        raster[from + j] *= values[j];
+                    }
+                }
+            }
+        }
+
+        private void evaluate(PDF pdf, double[] values, int offset, double outside)
+        {
+            if (logSpace) {
+                pdf.getLogProbabilities(domain, from, to, values, offset, outside);
+            } else {
+                pdf.getProbabilities(domain, from, to, values, offset, outside);
+            }
+        }
+
+        private void reduce()
+        {
+            sum = 0.0;
+            maxIndex = from;
+            for (int index = from; index < to; index++) {
+                if (raster[index] > raster[maxIndex]) {
+                    maxIndex = index;
+                }
+            }
+
+            if (logSpace) {
+                double max = raster[maxIndex];
+                for (int index = from; index < to; index++) {
+                    sum += Math.exp(raster[index] - max);
+                }
+            } else {
+                for (int index = from; index < to; index++) {
+                    sum += raster[index];
+                }
+            }
+        }
+
+        private int from;
+        private int to;
+        private boolean evaluate;
+        private double sum;
+        private int maxIndex;
     }
     
-    private Probability max;
-    private Probability norm;
+    private double[] raster;
+    private Slab[] slabs;
+    private double norm;
+    private Area domain;
+    private double outside;
+    private boolean logSpace;
     private Vector pdfs;
     private Cartesian pointOfMaxProbability;
 }
-
@@ -0,0 +1,305 @@
+package locator;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import config.Config;
+import coordinates.area.Area;
+import coordinates.area.VoxelVisitor;
+import coordinates.LocalFrame;
+import pdf.Gaussian;
+import pdf.PDF;
+import utils.pool.Batch;
+import utils.pool.WorkerPool;
+
+/**
+ * Builds a compound PDF incrementally.
+ * Every PDF is folded into a running raster as soon as it is added, so the work of the fusion is done while
+ * waiting for further PDFs. When the last PDF arrived only the norm and the maximum are left to calculate.
+ * The raster covers the union of the areas of all PDFs added so far. When it grows, the new points get the
+ * value epsilon ^ k, as none of the k PDFs added before covers them.
+ * If compound PDFs are restricted to the intersection (see Config.pdf.CompoundPdf.restrictToIntersection),
+ * the area of the result is not known before the last PDF arrived. In this case the PDFs are only collected.
+ * The first PDF establishes the LocalFrame of the epoch. All further PDFs are moved into it when they are 
+ * added, so the raster and all areas share one origin.
+ * If the builder is created for buildFused, folding is deferred as long as all PDFs are gauss distributions,
+ * as the closed form does not need the raster at all (see Config.pdf.CompoundPdf.useClosedForm). The first
+ * other PDF folds all PDFs added before. A builder for build keeps folding every PDF as it arrives.
+ */
+public class CompoundPdfBuilder {
+
+    public CompoundPdfBuilder()
+    {
+        this(true);
+    }
+
+    /**
+     * The constructor.
+     * @param fold false if the PDFs are only to be collected, e.g. for a PyramidSearch
+     */
+    public CompoundPdfBuilder(boolean fold)
+    {
+        this(fold, Config.pdf.CompoundPdf.restrictToIntersection());
+    }
+
+    /**
+     * The constructor.
+     * @param fold false if the PDFs are only to be collected, e.g. for a PyramidSearch
+     * @param intersect whether the compound PDF is restricted to the intersection, regardless of the config
+     */
+    public CompoundPdfBuilder(boolean fold, boolean intersect)
+    {
+        this(fold, intersect, false);
+    }
+
+    /**
+     * The constructor.
+     * @param fold false if the PDFs are only to be collected, e.g. for a PyramidSearch
+     * @param intersect whether the compound PDF is restricted to the intersection, regardless of the config
+     * @param fused true if the result is taken by buildFused, so PDFs which are all Gaussian need not be folded
+     */
+    public CompoundPdfBuilder(boolean fold, boolean intersect, boolean fused)
+    {
+        this.intersect = intersect;
+        pdfs = new Vector();
+        area = null;
+        raster = null;
+        frame = null;
+        closed = false;
+        logSpace = Config.pdf.CompoundPdf.useLogSpace();
+        incremental = fold && ! intersect;
+        gaussian = fused && Config.pdf.CompoundPdf.useClosedForm();
+        folded = 0;
+    }
+
+    /**
+     * add a PDF and fold it into the raster.
+     * PDFs added after the compound PDF was built are ignored.
+     * @param pdf the PDF to add
+     */
+    public synchronized void add(PDF pdf)
+    {
+        if (closed) {
+            return;
+        }
+
+        if (frame == null) {
+            frame = new LocalFrame(pdf.getArea().getOrigin());
+        }
+        pdf.move(frame.getOrigin());
+        pdfs.add(pdf);
+
+        gaussian = gaussian && pdf instanceof Gaussian;
+        if (incremental && ! gaussian) {
+            foldPending();
+        }
+    }
+
+    /**
+     * @return the frame all PDFs are moved to, or null if no PDF was added yet
+     */
+    public synchronized LocalFrame getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * @return the number of PDFs added so far
+     */
+    public synchronized int size()
+    {
+        return pdfs.size();
+    }
+
+    /**
+     * @return the number of PDFs which are folded into the raster so far
+     */
+    public synchronized int getNumberOfFoldedPdfs()
+    {
+        return folded;
+    }
+
+    /**
+     * stop accepting further PDFs.
+     * @return the PDFs added so far
+     */
+    public synchronized Vector close()
+    {
+        closed = true;
+        return pdfs;
+    }
+
+    /**
+     * build the compound PDF out of all PDFs added so far.
+     * Afterwards the builder does not accept any further PDFs.
+     * @return the compound PDF, or null if no PDF was added
+     */
+    public synchronized CompoundPdf build()
+    {
+        closed = true;
+
+        if (pdfs.size() == 0) {
+            return null;
+        }
+
+        if (! incremental) {
+            return new CompoundPdf(pdfs, intersect);
+        }
+
+        foldPending();
+        return new CompoundPdf(area, pdfs, raster);
+    }
+
+    /**
+     * build the fused PDF out of all PDFs added so far.
+     * If the builder was created for it and all PDFs are Gaussian this is a GaussianProductPdf, otherwise
+     * the compound PDF, see build.
+     * Afterwards the builder does not accept any further PDFs.
+     * @return the fused PDF, or null if no PDF was added
+     */
+    public synchronized FusedPdf buildFused()
+    {
+        closed = true;
+
+        if (gaussian && GaussianProductPdf.isApplicable(pdfs)) {
+            return new GaussianProductPdf(pdfs, intersect);
+        }
+
+        return build();
+    }
+
+    /**
+     * fold all PDFs into the raster which are not folded yet.
+     */
+    private void foldPending()
+    {
+        while (folded < pdfs.size()) {
+            PDF pdf = (PDF) pdfs.elementAt(folded);
+            grow(pdf.getArea());
+            fold(pdf);
+            folded += 1;
+        }
+    }
+
+    /**
+     * expand the raster to cover the given area as well.
+     */
+    private void grow(Area with)
+    {
+        if (area == null) {
+            area = (Area) with.clone();
+            raster = new double[area.getNumberOfPoints()];
+            Arrays.fill(raster, logSpace ? 0.0 : 1.0);
+            return;
+        }
+
+        Area grown = (Area) area.clone();
+        grown.expand(with);
+        if (grown.getNumberOfPoints() == area.getNumberOfPoints()) {
+            return;
+        }
+
+        // none of the PDFs so far covers the new points
+        double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+        double uncovered = logSpace ? 0.0 : 1.0;
+        for (int i=0; i < folded; i++) {
+            if (logSpace) {
+                uncovered += Math.log(epsilon);
+            } else {
+                uncovered *= epsilon;
+            }
+        }
+
+        Resample resample = new Resample(grown.getNumberOfPoints(), uncovered);
+        grown.forEachVoxel(resample);
+
+        area = grown;
+        raster = resample.values;
+    }
+
+    /**
+     * multiply the probabilities of the PDF into the raster.
+     * The raster is split into slabs of contiguous indices which are processed in parallel.
+     */
+    private void fold(PDF pdf)
+    {
+        int points = raster.length;
+        int parts = Math.max(1, Math.min(points, Config.pdf.CompoundPdf.getNumberOfSlabs()));
+
+        Batch batch = new Batch(WorkerPool.getDefault());
+        for (int i=0; i < parts; i++) {
+            int from = (int) ((long) points * i / parts);
+            int to = (int) ((long) points * (i + 1) / parts);
+            batch.add(new Fold(pdf, from, to));
+        }
+        batch.run();
+    }
+
+    /**
+     * copies the values of the raster to a raster over a grown area.
+     */
+    private class Resample implements VoxelVisitor {
+        Resample(int size, double uncovered)
+        {
+            values = new double[size];
+            this.uncovered = uncovered;
+            index = 0;
+        }
+
+        public void visit(int x, int y, int z)
+        {
+            int old = area.indexOf(x, y, z);
+            values[index++] = old == -1 ? uncovered : raster[old];
+        }
+
+        private double[] values;
+        private double uncovered;
+        private int index;
+    }
+
+    /**
+     * folds one PDF into a range of the raster.
+     * The PDF is evaluated in bulk, points it does not cover get epsilon.
+     */
+    private class Fold implements Runnable {
+        Fold(PDF pdf, int from, int to)
+        {
+            this.pdf = pdf;
+            this.from = from;
+            this.to = to;
+        }
+
+        public void run()
+        {
+            double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+            double[] values = new double[to - from];
+
+            if (logSpace) {
+                pdf.getLogProbabilities(area, from, to, values, 0, Math.log(epsilon));
+                for (int i=0; i < values.length; i++) {
+                    raster[from + i] += values[i];
+                }
+            } else {
+                pdf.getProbabilities(area, from, to, values, 0, epsilon);
+                for (int i=0; i < values.length; i++) {
+                    raster[from + i] *= values[i];
+                }
+            }
+        }
+
+        private PDF pdf;
+        private int from;
+        private int to;
+    }
+
+    private Vector pdfs;
+    private Area area;
+    private double[] raster;
+    private boolean closed;
+    private boolean logSpace;
+    private boolean incremental;
+    private boolean intersect;
+    private boolean gaussian;
+    private int folded;
+    private LocalFrame frame;
+}
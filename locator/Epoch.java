@@ -0,0 +1,92 @@
+package locator;
+
+import config.Config;
+import pdf.PDF;
+
+/**
+ * One request of the locator.
+ * The epoch is the drain the plugins deliver their PDFs to, so concurrent requests do not share any state.
+ * Every plugin gets its own slot, which is passed as handle. A slot accepts one PDF until the deadline,
+ * everything else is ignored.
+ * The PDFs are handed to a CompoundPdfBuilder of their own, see there.
+ */
+class Epoch implements PDFDrain {
+    /**
+     * The constructor.
+     * @param slots the number of plugins which are triggered
+     * @param deadline the absolut system time after which no PDF is accepted any more
+     * @param fold whether the PDFs are to be folded into the compound PDF as they arrive
+     * @param fused whether the result is taken by CompoundPdfBuilder.buildFused
+     */
+    Epoch(int slots, long deadline, boolean fold, boolean fused)
+    {
+        this.deadline = deadline;
+        builder = new CompoundPdfBuilder(fold, Config.pdf.CompoundPdf.restrictToIntersection(), fused);
+        delivered = new boolean[slots];
+        pending = slots;
+        closed = false;
+    }
+
+    /**
+     * implementation of the callback handler.
+     * The PDF is folded into the compound PDF right away in the thread of the plugin.
+     * @param pdf the plugins PDF
+     * @param handle the slot of the plugin
+     */
+    public void callback(PDF pdf, int handle)
+    {
+        synchronized (this) {
+            if (closed || handle < 0 || handle >= delivered.length || delivered[handle]) {
+                return;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return;
+            }
+            delivered[handle] = true;
+        }
+
+        // a builder which is closed meanwhile ignores the PDF
+        builder.add(pdf);
+
+        synchronized (this) {
+            pending -= 1;
+            if (pending == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * wait until all plugins delivered or the deadline passed, whatever comes first.
+     * Wakeups before are ignored. If the thread is interrupted it stops waiting and keeps the interrupt.
+     * Afterwards no PDF is accepted any more.
+     * @return the builder holding the delivered PDFs
+     */
+    CompoundPdfBuilder await()
+    {
+        synchronized (this) {
+            long remaining = deadline - System.currentTimeMillis();
+            while (pending > 0 && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            closed = true;
+        }
+
+        // a PDF which is being folded right now is still waited for by the builder's lock
+        builder.close();
+
+        return builder;
+    }
+
+    private long deadline;
+    private CompoundPdfBuilder builder;
+    private boolean[] delivered;
+    private int pending;
+    private boolean closed;
+}
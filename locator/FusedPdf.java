@@ -0,0 +1,42 @@
+package locator;
+
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import coordinates.LocalFrame;
+import pdf.PDF;
+
+/**
+ * The result of a fusion engine.
+ * There are two engines: the CompoundPdf evaluates every point of the area, the ParticlePdf evaluates a fixed
+ * number of particles only. Which one the locator uses is a config value, see Locator.getFusedPdf.
+ * A fused PDF may hold ressources besides the heap, like the file of a MappedCompoundPdf. So whoever gets
+ * a fused PDF owns it and has to close it when it is no longer needed.
+ */
+public abstract class FusedPdf extends PDF {
+
+    protected FusedPdf(Area area)
+    {
+        super(area);
+    }
+
+    /**
+     * @return point of maximum probability in Cartesian coordinates
+     */
+    public abstract Cartesian getPointOfMaxProbability();
+
+    /**
+     * @return the frame all results are relative to, i.e. the frame of the request the PDF was fused in
+     */
+    public LocalFrame getFrame()
+    {
+        return new LocalFrame(area.getOrigin());
+    }
+
+    /**
+     * release the ressources of the PDF. The PDF must not be used afterwards.
+     * Engines which only use the heap need not do anything.
+     */
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,276 @@
+package locator;
+
+import java.util.Vector;
+
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import config.Config;
+import pdf.Gaussian;
+import pdf.PDF;
+
+/**
+ * A compound PDF over gauss distributions, calculated in closed form.
+ * The product of gauss distributions is a gauss distribution again. Its inverse covariance is the sum of the
+ * inverse covariances, and its mean is the mean of the single means weighted by them. So the mean and the
+ * point of maximum probability are known without evaluating a single point of the area.
+ * Only if probabilities are requested, the CompoundPdf over the same PDFs is built once and asked, so the
+ * probabilities are exactly the same.
+ * The PDFs of the CompoundPdf are cut off at their areas, outside a PDF contributes epsilon instead. If the 
+ * PDFs disagree, this may be more than the product at the mean. So the closed form is only trusted if the
+ * point is covered by all areas and its probability exceeds everything the cut off could yield. Otherwise
+ * the point of maximum probability is taken from the CompoundPdf as well.
+ */
+public class GaussianProductPdf extends FusedPdf {
+    /**
+     * The constructor.
+     * @param pdfs vector of PDF objects, which must all be Gaussian and have the same origin
+     * @param intersect whether the CompoundPdf built on demand covers only the intersection of the PDFs' areas
+     */
+    public GaussianProductPdf(Vector pdfs, boolean intersect)
+    {
+        super(CompoundPdf.calcArea(pdfs));
+
+        if (! isApplicable(pdfs)) {
+            throw new AssertionError();
+        }
+
+        this.pdfs = pdfs;
+        this.intersect = intersect;
+        compound = null;
+
+        calcProduct();
+        pointOfMaxProbability = findMax();
+    }
+
+    /**
+     * @return whether the PDFs can be fused in closed form, i.e. there is at least one and all are Gaussian
+     */
+    public static boolean isApplicable(Vector pdfs)
+    {
+        if (pdfs.size() == 0) {
+            return false;
+        }
+        for (int i=0; i < pdfs.size(); i++) {
+            if (! (pdfs.elementAt(i) instanceof Gaussian)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the compound probability for the given point, see CompoundPdf
+     */
+    public double density(int x, int y, int z)
+    {
+        return getCompoundPdf().density(x, y, z);
+    }
+
+    public double logDensity(int x, int y, int z)
+    {
+        return getCompoundPdf().logDensity(x, y, z);
+    }
+
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        getCompoundPdf().getProbabilities(region, from, to, values, offset, outside);
+    }
+
+    public void getLogProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        getCompoundPdf().getLogProbabilities(region, from, to, values, offset, outside);
+    }
+
+    /**
+     * @return point of maximum probability in Cartesian coordinates
+     */
+    public Cartesian getPointOfMaxProbability()
+    {
+        if (pointOfMaxProbability == null) {
+            return getCompoundPdf().getPointOfMaxProbability();
+        }
+
+        return pointOfMaxProbability;
+    }
+
+    /**
+     * @return the mean of the product, rounded to the grid
+     */
+    public Cartesian getMean()
+    {
+        return new Cartesian((int) Math.round(mean[0]), (int) Math.round(mean[1]), (int) Math.round(mean[2]));
+    }
+
+    /**
+     * @return the covariance matrix of the product in grid units ^ 2
+     */
+    public double[][] getCovariance()
+    {
+        double[][] copy = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            System.arraycopy(covariance[i], 0, copy[i], 0, 3);
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return the CompoundPdf over the same PDFs, which is built on the first call
+     */
+    public synchronized CompoundPdf getCompoundPdf()
+    {
+        if (compound == null) {
+            compound = new CompoundPdf(pdfs, intersect);
+        }
+
+        return compound;
+    }
+
+    /**
+     * moves the results and the given PDFs along with the area.
+     */
+    protected synchronized void moved(Cartesian shift)
+    {
+        mean[0] += shift.getX();
+        mean[1] += shift.getY();
+        mean[2] += shift.getZ();
+        if (pointOfMaxProbability != null) {
+            pointOfMaxProbability.move(shift);
+        }
+
+        if (compound != null) {
+            compound.move(area.getOrigin());
+            return;
+        }
+        for (int i=0; i < pdfs.size(); i++) {
+            ((PDF) pdfs.elementAt(i)).move(area.getOrigin());
+        }
+    }
+
+    /**
+     * calculate the inverse covariance, the covariance and the mean of the product.
+     * inverse = sum inverse_i, mean = covariance * sum (inverse_i * mean_i)
+     */
+    private void calcProduct()
+    {
+        inverse = new double[3][3];
+        double[] weighted = new double[3];
+        for (int n=0; n < pdfs.size(); n++) {
+            Gaussian gaussian = (Gaussian) pdfs.elementAt(n);
+            double[][] single = gaussian.getInverseCovariance();
+            Cartesian center = gaussian.getMean();
+            double[] m = {center.getX(), center.getY(), center.getZ()};
+            for (int i=0; i < 3; i++) {
+                for (int j=0; j < 3; j++) {
+                    inverse[i][j] += single[i][j];
+                    weighted[i] += single[i][j] * m[j];
+                }
+            }
+        }
+
+        covariance = invert(inverse);
+        mean = new double[3];
+        for (int i=0; i < 3; i++) {
+            for (int j=0; j < 3; j++) {
+                mean[i] += covariance[i][j] * weighted[j];
+            }
+        }
+    }
+
+    /**
+     * find the grid point of maximum probability.
+     * This is the point next to the mean with respect to the inverse covariance. It is searched among the
+     * neighbours of the rounded mean.
+     * @return the point, or null if the cut off of the PDFs at their areas may yield a higher probability
+     */
+    private Cartesian findMax()
+    {
+        int roundX = (int) Math.round(mean[0]);
+        int roundY = (int) Math.round(mean[1]);
+        int roundZ = (int) Math.round(mean[2]);
+
+        Cartesian best = null;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int z = roundZ - 1; z <= roundZ + 1; z++) {
+            for (int y = roundY - 1; y <= roundY + 1; y++) {
+                for (int x = roundX - 1; x <= roundX + 1; x++) {
+                    double distance = calcDistance(x - mean[0], y - mean[1], z - mean[2]);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = new Cartesian(x, y, z);
+                    }
+                }
+            }
+        }
+
+        // outside its area a PDF contributes epsilon, the others at most their peak
+        double logEpsilon = Math.log(Config.pdf.CompoundPdf.getEpsilon());
+        double logValue = 0.0;
+        double logBound = 0.0;
+        double loss = Double.NEGATIVE_INFINITY;
+        for (int i=0; i < pdfs.size(); i++) {
+            PDF pdf = (PDF) pdfs.elementAt(i);
+            if (! pdf.getArea().contains(best.getX(), best.getY(), best.getZ())) {
+                return null;
+            }
+            logValue += pdf.logDensity(best.getX(), best.getY(), best.getZ());
+
+            Cartesian peak = ((Gaussian) pdf).getMean();
+            double logPeak = Math.max(logEpsilon, pdf.logDensity(peak.getX(), peak.getY(), peak.getZ()));
+            logBound += logPeak;
+            loss = Math.max(loss, logEpsilon - logPeak);
+        }
+        if (logValue < logBound + loss) {
+            return null;
+        }
+
+        return best;
+    }
+
+    /**
+     * calculate the quadratic form d^T * inverse * d.
+     */
+    private double calcDistance(double x, double y, double z)
+    {
+        return inverse[0][0] * x * x + inverse[1][1] * y * y + inverse[2][2] * z * z
+            + 2 * (inverse[0][1] * x * y + inverse[0][2] * x * z + inverse[1][2] * y * z);
+    }
+
+    /**
+     * invert a symmetric, positive definite 3x3 matrix by its adjugate.
+     */
+    private static double[][] invert(double[][] m)
+    {
+        double[][] adjugate = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            for (int j=0; j < 3; j++) {
+                int i1 = (j + 1) % 3, i2 = (j + 2) % 3;
+                int j1 = (i + 1) % 3, j2 = (i + 2) % 3;
+                adjugate[i][j] = m[i1][j1] * m[i2][j2] - m[i1][j2] * m[i2][j1];
+            }
+        }
+
+        double determinant = m[0][0] * adjugate[0][0] + m[0][1] * adjugate[1][0] + m[0][2] * adjugate[2][0];
+        if (determinant <= 0) {
+            // not positive definite
+            throw new AssertionError();
+        }
+
+        for (int i=0; i < 3; i++) {
+            for (int j=0; j < 3; j++) {
+                adjugate[i][j] /= determinant;
+            }
+        }
+
+        return adjugate;
+    }
+
+    private Vector pdfs;
+    private boolean intersect;
+    private CompoundPdf compound;
+    private double[][] inverse;
+    private double[][] covariance;
+    private double[] mean;
+    private Cartesian pointOfMaxProbability;
+}
@@ -0,0 +1,34 @@
+package locator;
+
+import coordinates.Cartesian;
+import coordinates.LocalFrame;
+
+/**
+ * A point of maximum probability together with the frame it is relative to.
+ * Every request of the locator has a frame of its own, so a point is meaningless without it.
+ */
+public class Location {
+    /**
+     * The constructor.
+     * @param point the point in Cartesian coordinates of the frame
+     * @param frame the frame of the request
+     */
+    public Location(Cartesian point, LocalFrame frame)
+    {
+        this.point = point;
+        this.frame = frame;
+    }
+
+    public Cartesian getPoint()
+    {
+        return point;
+    }
+
+    public LocalFrame getFrame()
+    {
+        return frame;
+    }
+
+    private Cartesian point;
+    private LocalFrame frame;
+}
@@ -0,0 +1,14 @@
+package locator;
+
+/**
+ * A subscriber of the streaming mode of the locator, see Locator.startStreaming.
+ */
+public interface LocationListener {
+    /**
+     * called for every epoch in which at least one plugin delivered a PDF.
+     * The call is made by the thread of the stream, so it should return quickly. Otherwise the following 
+     * epochs are delayed.
+     * @param pdf the compound PDF of the epoch, relative to the origin of its area
+     */
+    public void locationUpdated(CompoundPdf pdf);
+}
@@ -1,25 +1,29 @@
 package locator;
 
 import plugins.Plugin;
+import java.io.IOException;
 import java.util.HashMap;
-import java.util.Map;
 import java.util.Vector;
-import java.util.Iterator;
 import logger.Logger;
-import pdf.PDF;
 import config.Config;
 
 /**
  * The locator is responsible for requesting current PDFs from all registered plugins
  * and calculate the compound PDF out of it.
+ * The PDFs are folded into the compound PDF as soon as they are delivered, see CompoundPdfBuilder.
+ * Every request is an Epoch of its own, with its own LocalFrame. Thus several threads may request locations
+ * at the same time. The results are relative to the origin of the frame, which they carry themselves,
+ * see FusedPdf.getFrame and Location.
+ * Besides these blocking requests there is a streaming mode, which publishes a compound PDF periodically to
+ * all registered LocationListeners.
  */
-public class Locator implements PDFDrain {
+public class Locator {
     private HashMap plugins;
 
     public Locator() {
-        counter = -1;
         plugins = new HashMap();
-        pdfs = new Vector();
+        listeners = new Vector();
+        stream = null;
     }
    
     /**
@@ -49,7 +53,9 @@ public class Locator implements PDFDrain {
             return;
         }
 
-        plugins.put(name, plugin);
+        synchronized (plugins) {
+            plugins.put(name, plugin);
+        }
         plugin.load();
     }
 
@@ -60,7 +66,10 @@ public class Locator implements PDFDrain {
      */
     public void unloadPlugin(String name)
     {
-        Plugin plugin = (Plugin) plugins.remove(name);
+        Plugin plugin;
+        synchronized (plugins) {
+            plugin = (Plugin) plugins.remove(name);
+        }
         if (plugin == null) {
             return;
         }
@@ -69,68 +78,218 @@ public class Locator implements PDFDrain {
     }
 
 
-    /**** PDFDrain ****/
+    /**
+     * triggers the plugins to create a current PDF and returns the compound PDF.
+     * After triggering all plugins the function waits to give the plugins enough time.
+     * As soon as all plugins returned a PDF through the callback or after the timeout exceeded the function
+     * starts to calculate the compound PDF
+     * @return   the compound PDF over all delivered PDFs
+     */
+    public CompoundPdf getCompoundPdf()
+    {
+        return collect(true).build();
+    }
 
     /**
-     * implementation of the callback handler.
-     * Accepts a PDF from a plugin only if the handle matches. This is to block late deliveries of PDFs.
-     * @param pdf the plugins PDF
-     * @param handle the handle which was passed to the plugin when triggered to generate a new PDF
+     * triggers the plugins to create a current PDF and fuses them with the configured engine.
+     * See Config.locator.Locator.getEngine. If the raster of the mapped engine cannot be created, the
+     * particles are used. With the grid engine, PDFs which are all Gaussian are fused in
+     * closed form, see GaussianProductPdf.
+     * The caller owns the result and has to close it, see FusedPdf.close. Otherwise the mapped engine leaks
+     * a file for every call.
+     * @return the fused PDF, or null if no plugin delivered a PDF
      */
-    public void callback(PDF pdf, int handle)
+    public FusedPdf getFusedPdf()
     {
-        synchronized (pdfs) {
-            if (handle != counter) {
-                return;
+        String engine = Config.locator.Locator.getEngine();
+        if (engine.equals("particles")) {
+            Vector delivered = collectPdfs();
+            if (delivered.size() == 0) {
+                return null;
+            }
+            return new ParticlePdf(delivered);
+        }
+
+        if (engine.equals("mapped")) {
+            Vector delivered = collectPdfs();
+            if (delivered.size() == 0) {
+                return null;
             }
-            pdfs.add(pdf);
-            if (pdfs.size() == numberOfPlugins) {
-                pdfs.notify();
+            try {
+                return new MappedCompoundPdf(delivered);
+            } catch (IOException e) {
+                // the particles do not need a raster at all
+                Logger.error("Locator", "getFusedPdf", "cannot map the raster: " + e.getMessage() + ", using particles");
+                return new ParticlePdf(delivered);
             }
         }
+
+        if (! engine.equals("grid")) {
+            Logger.error("Locator", "getFusedPdf", "unknown engine " + engine + ", using the grid");
+        }
+        return await(trigger(true, true, Long.MAX_VALUE)).buildFused();
     }
 
     /**
-     * triggers the plugins to create a current PDF and returns the compound PDF.
-     * After triggering all plugins the function waits to give the plugins enough time.
-     * As soon as all plugins returned a PDF through the callback or after the timeout exceeded the function
-     * starts to calculate the compound PDF
-     * @return   the compound PDF over all delivered PDFs
+     * triggers the plugins to create a current PDF and returns the point of maximum compound probability.
+     * This is cheaper than getCompoundPdf, as the point is found by a PyramidSearch instead of evaluating 
+     * the whole area.
+     * @return the point of maximum probability with the frame of the request, or null if no plugin 
+     * delivered a PDF
      */
-    public CompoundPdf getCompoundPdf()
+    public Location getLocation()
+    {
+        CompoundPdfBuilder builder = collect(false);
+        Vector delivered = builder.close();
+        if (delivered.size() == 0) {
+            return null;
+        }
+
+        return new Location(new PyramidSearch(delivered).getPointOfMaxProbability(), builder.getFrame());
+    }
+
+    /**
+     * register a subscriber of the streaming mode.
+     */
+    public void addLocationListener(LocationListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    public void removeLocationListener(LocationListener listener)
+    {
+        listeners.remove(listener);
+    }
+
+    /**
+     * start the streaming mode with the period of the config.
+     * See Config.locator.Locator.getPeriod.
+     */
+    public void startStreaming()
+    {
+        startStreaming(Config.locator.Locator.getPeriod());
+    }
+
+    /**
+     * start the streaming mode.
+     * The plugins are triggered periodically and the compound PDFs are published to the listeners, see Stream.
+     * If the locator is streaming already, the period is changed.
+     * @param period the time between two epochs in milliseconds
+     */
+    public synchronized void startStreaming(long period)
+    {
+        stopStreaming();
+        stream = new Stream(this, period);
+        stream.start();
+    }
+
+    /**
+     * stop the streaming mode.
+     * If the locator is not streaming nothing happens.
+     */
+    public synchronized void stopStreaming()
     {
-        synchronized (pdfs) {
-            numberOfPlugins = plugins.size();
+        if (stream == null) {
+            return;
         }
 
-        Iterator i = plugins.entrySet().iterator(); 
-        long timeout = Config.locator.Locator.getTimeout();
-        while (i.hasNext()) {
-            Map.Entry entry = (Map.Entry) i.next();
-            Plugin plugin = (Plugin) entry.getValue();
-            plugin.trigger(this, System.currentTimeMillis() + timeout, counter);
+        stream.finish();
+        stream = null;
+    }
+
+    /**
+     * triggers the plugins and waits for their PDFs.
+     * @param fold whether the PDFs are to be folded into the compound PDF as they arrive
+     * @return the builder holding the delivered PDFs
+     */
+    private CompoundPdfBuilder collect(boolean fold)
+    {
+        return await(trigger(fold, Long.MAX_VALUE));
+    }
+
+    /**
+     * @return the plugins loaded right now
+     */
+    Plugin[] getPlugins()
+    {
+        synchronized (plugins) {
+            return (Plugin[]) plugins.values().toArray(new Plugin[plugins.size()]);
         }
+    }
 
-        CompoundPdf compoundPdf;
-        synchronized (pdfs) {
-            try {
-                pdfs.wait(timeout, 0);
-            } catch (InterruptedException e) {
-                ;
-            }
+    /**
+     * triggers the plugins and waits for their PDFs, without fusing them.
+     * @return the delivered PDFs, all moved to the frame of the request
+     */
+    Vector collectPdfs()
+    {
+        return collect(false).close();
+    }
 
-            counter += 1; // exclude all plugins which are late
-            if (pdfs.size() == 0) {
-                return null;
-            }
-            compoundPdf = new CompoundPdf(pdfs);
-            pdfs = new Vector();
+    /**
+     * starts a new epoch by triggering all plugins.
+     * @param fold whether the PDFs are to be folded into the compound PDF as they arrive
+     * @param deadline the absolut system time until the PDFs must be delivered, at most the timeout from now
+     * @return the epoch the plugins deliver to
+     */
+    Epoch trigger(boolean fold, long deadline)
+    {
+        return trigger(fold, false, deadline);
+    }
+
+    /**
+     * starts a new epoch by triggering all plugins.
+     * @param fold whether the PDFs are to be folded into the compound PDF as they arrive
+     * @param fused whether the result is taken by CompoundPdfBuilder.buildFused
+     * @param deadline the absolut system time until the PDFs must be delivered, at most the timeout from now
+     * @return the epoch the plugins deliver to
+     */
+    private Epoch trigger(boolean fold, boolean fused, long deadline)
+    {
+        Plugin[] triggered = getPlugins();
+        deadline = Math.min(deadline, System.currentTimeMillis() + Config.locator.Locator.getTimeout());
+        Epoch epoch = new Epoch(triggered.length, deadline, fold, fused);
+        for (int i=0; i < triggered.length; i++) {
+            triggered[i].trigger(epoch, deadline, i);
         }
 
-        return compoundPdf;
+        return epoch;
+    }
+
+    /**
+     * waits for the PDFs of an epoch.
+     * @return the builder holding the delivered PDFs
+     */
+    private CompoundPdfBuilder await(Epoch epoch)
+    {
+        return epoch.await();
+    }
+
+    /**
+     * waits for the PDFs of an epoch and calculates the compound PDF.
+     * @return the compound PDF, or null if no plugin delivered a PDF
+     */
+    CompoundPdf fuse(Epoch epoch)
+    {
+        return await(epoch).build();
+    }
+
+    /**
+     * hand a compound PDF to all listeners.
+     * An exception thrown by a listener does not affect the others.
+     */
+    void publish(CompoundPdf pdf)
+    {
+        Object[] current = listeners.toArray();
+        for (int i=0; i < current.length; i++) {
+            try {
+                ((LocationListener) current[i]).locationUpdated(pdf);
+            } catch (RuntimeException e) {
+                Logger.error("Locator", "publish", "listener failed: " + e.getMessage());
+            }
+        }
     }
  
-    private Vector pdfs;
-    private int counter;
-    private int numberOfPlugins;
+    private Vector listeners;
+    private Stream stream;
 }
@@ -0,0 +1,373 @@
+package locator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Vector;
+
+import logger.Logger;
+import config.Config;
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import pdf.PDF;
+import utils.pool.Batch;
+import utils.pool.WorkerPool;
+import utils.raster.MappedRaster;
+
+/**
+ * A compound PDF over some PDFs, with the raster in a memory mapped file.
+ * The formula is the same as for the CompoundPdf, and so are the results. But the raster is not on the heap,
+ * and it is indexed by long, so the area may have billions of points. The operating system pages the
+ * raster in and out as needed.
+ * The area is evaluated in slabs of a bounded number of points (see Config.locator.MappedCompoundPdf.getSlabSize).
+ * A slab consists of whole xy layers if they are small enough, otherwise of whole rows of one layer,
+ * otherwise of a part of one row. So every slab is a cuboid and a contiguous part of the raster at once.
+ * Every slab is a small area of its own for the bulk evaluation of the PDFs, so the PDFs never see an index
+ * beyond the range of int. The slabs are processed in parallel by the default worker pool.
+ * The raster of a file of its own can be opened again, e.g. after a restart, without the PDFs.
+ */
+public class MappedCompoundPdf extends FusedPdf {
+    /**
+     * The constructor for a raster in a temporary file.
+     * @param pdfs vector of PDF objects, which must have the same origin
+     */
+    public MappedCompoundPdf(Vector pdfs) throws IOException
+    {
+        this(pdfs, null);
+    }
+
+    /**
+     * The constructor.
+     * @param pdfs vector of PDF objects, which must have the same origin
+     * @param file the file of the raster, which is kept when the PDF is closed, or null for a temporary one
+     */
+    public MappedCompoundPdf(Vector pdfs, File file) throws IOException
+    {
+        super(CompoundPdf.calcArea(pdfs));
+        this.pdfs = pdfs;
+        init(pdfs.size());
+
+        long points = area.getNumberOfVoxels();
+        raster = file == null ? new MappedRaster(points) : new MappedRaster(file, points);
+
+        runSlabs(true);
+        calcNormAndMax();
+    }
+
+    /**
+     * The constructor for a raster which was calculated before, e.g. by an earlier run of the process.
+     * The norm and the point of maximum probability are calculated from the raster again, the PDFs are not
+     * needed. The mode of the config (see Config.pdf.CompoundPdf.useLogSpace) must be the same as before.
+     * @param area the area of the compound PDF the raster was calculated for
+     * @param count the number of PDFs the raster was calculated of
+     * @param file the file of the raster
+     * @throws IOException if the file does not exist or does not fit to the area
+     */
+    public MappedCompoundPdf(Area area, int count, File file) throws IOException
+    {
+        super((Area) area.clone());
+        pdfs = new Vector();
+        init(count);
+
+        long points = area.getNumberOfVoxels();
+        if (! file.isFile() || file.length() != points * 8) {
+            throw new IOException("no raster of " + points + " points: " + file);
+        }
+        raster = new MappedRaster(file, points);
+
+        runSlabs(false);
+        calcNormAndMax();
+    }
+
+    /**
+     * @return the compound probability for the given point
+     */
+    public double density(int x, int y, int z)
+    {
+        if (logSpace) {
+            return Math.exp(getRasterValue(x, y, z) - norm);
+        }
+        return getRasterValue(x, y, z) * norm;
+    }
+
+    public double logDensity(int x, int y, int z)
+    {
+        if (logSpace) {
+            return getRasterValue(x, y, z) - norm;
+        }
+        return Math.log(getRasterValue(x, y, z) * norm);
+    }
+
+    /**
+     * @return point of maximum probability in Cartesian coordinates
+     */
+    public Cartesian getPointOfMaxProbability()
+    {
+        return pointOfMaxProbability;
+    }
+
+    /**
+    /**
+     * @return the raster of unnormalized compound probabilities, in the order of the area's iterator
+     */
+    public MappedRaster getRaster()
+    {
+        return raster;
+    }
+
+    /**
+     * close the raster, see MappedRaster.close.
+     * The PDF must not be used afterwards.
+     */
+    public void close()
+    {
+        try {
+            raster.close();
+        } catch (IOException e) {
+            Logger.error("MappedCompoundPdf", "close", "cannot close the raster: " + e.getMessage());
+        }
+    }
+
+    /**
+     * moves the bounds, the point of maximum probability and the given PDFs along with the area.
+     */
+    protected void moved(Cartesian shift)
+    {
+        lowX += shift.getX();
+        lowY += shift.getY();
+        lowZ += shift.getZ();
+        pointOfMaxProbability.move(shift);
+        for (int i=0; i < pdfs.size(); i++) {
+            ((PDF) pdfs.elementAt(i)).move(area.getOrigin());
+        }
+    }
+
+    /**
+     * determine the bounds of the raster and the value outside the area.
+     * @param count the number of PDFs
+     */
+    private void init(int count)
+    {
+        logSpace = Config.pdf.CompoundPdf.useLogSpace();
+
+        Cartesian lower = area.getLowerBound();
+        Cartesian upper = area.getUpperBound();
+        lowX = lower.getX();
+        lowY = lower.getY();
+        lowZ = lower.getZ();
+        sizeX = upper.getX() - lowX + 1;
+        sizeY = upper.getY() - lowY + 1;
+        sizeZ = upper.getZ() - lowZ + 1;
+
+        double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+        if (logSpace) {
+            outside = count * Math.log(epsilon);
+        } else {
+            outside = Math.pow(epsilon, count);
+        }
+    }
+
+    /**
+     * @return the unnormalized value of the given point of the area
+     */
+    private double getRasterValue(int x, int y, int z)
+    {
+        int dx = x - lowX;
+        int dy = y - lowY;
+        int dz = z - lowZ;
+        if (dx < 0 || dx >= sizeX || dy < 0 || dy >= sizeY || dz < 0 || dz >= sizeZ) {
+            return outside;
+        }
+
+        return raster.get(((long) dz * sizeY + dy) * sizeX + dx);
+    }
+
+    /**
+     * evaluate the unnormalized compound probability for every point of the area, slab by slab.
+     * @param evaluate true to evaluate the raster, false if it is filled already and only the partial
+     * sums and maxima are needed
+     */
+    private void runSlabs(boolean evaluate)
+    {
+        // the extent of a slab, see the comment of the class
+        int slab = Config.locator.MappedCompoundPdf.getSlabSize();
+        long layer = (long) sizeX * sizeY;
+        int stepX = sizeX;
+        int stepY = sizeY;
+        int stepZ = 1;
+        if (layer <= slab) {
+            stepZ = (int) (slab / layer);
+        } else if (sizeX <= slab) {
+            stepY = slab / sizeX;
+        } else {
+            stepX = slab;
+            stepY = 1;
+        }
+
+        Vector jobs = new Vector();
+        for (int z = 0; z < sizeZ; z += stepZ) {
+            for (int y = 0; y < sizeY; y += stepY) {
+                for (int x = 0; x < sizeX; x += stepX) {
+                    jobs.add(new Slab(x, Math.min(sizeX, x + stepX) - 1, y, Math.min(sizeY, y + stepY) - 1,
+                        z, Math.min(sizeZ, z + stepZ) - 1, evaluate));
+                }
+            }
+        }
+
+        slabs = (Slab[]) jobs.toArray(new Slab[jobs.size()]);
+        Batch batch = new Batch(WorkerPool.getDefault());
+        for (int i=0; i < slabs.length; i++) {
+            batch.add(slabs[i]);
+        }
+        batch.run();
+    }
+
+    /**
+     * calculate the norm factor and the point of the maxium probability.
+     * The partial results of the slabs are merged in the order of the slabs, see CompoundPdf.
+     */
+    private void calcNormAndMax()
+    {
+        Slab best = slabs[0];
+        for (int i=1; i < slabs.length; i++) {
+            if (slabs[i].max > best.max) {
+                best = slabs[i];
+            }
+        }
+
+        double sum = 0.0;
+        if (logSpace) {
+            // the partial sums are relative to the maximum of their slab
+            for (int i=0; i < slabs.length; i++) {
+                sum += slabs[i].sum * Math.exp(slabs[i].max - best.max);
+            }
+            norm = best.max + Math.log(sum);
+        } else {
+            for (int i=0; i < slabs.length; i++) {
+                sum += slabs[i].sum;
+            }
+            norm = 1.0 / sum;
+        }
+        slabs = null;
+
+        pointOfMaxProbability = area.getVoxel(best.maxIndex);
+    }
+
+    /**
+     * a cuboid part of the area which is evaluated as one job.
+     * The slab is evaluated on the heap, then it is written to the raster. Besides it determines the partial
+     * sum and the partial maximum, like the slabs of the CompoundPdf.
+     * The bounds are relative to the lower bound of the area.
+     */
+    private class Slab implements Runnable {
+        Slab(int fromX, int toX, int fromY, int toY, int fromZ, int toZ, boolean evaluate)
+        {
+            this.fromX = fromX;
+            this.toX = toX;
+            this.fromY = fromY;
+            this.toY = toY;
+            this.fromZ = fromZ;
+            this.toZ = toZ;
+            this.evaluate = evaluate;
+        }
+
+        public void run()
+        {
+            int points = (toX - fromX + 1) * (toY - fromY + 1) * (toZ - fromZ + 1);
+            long first = ((long) fromZ * sizeY + fromY) * sizeX + fromX;
+            double[] raster = new double[points];
+
+            if (evaluate) {
+                evaluate(raster);
+                MappedCompoundPdf.this.raster.put(first, raster, 0, points);
+            } else {
+                MappedCompoundPdf.this.raster.get(first, raster, 0, points);
+            }
+
+            reduce(raster);
+            maxIndex += first;
+        }
+
+        /**
+         * evaluate the PDFs one after the other in bulk and combine them.
+         */
+        private void evaluate(double[] raster)
+        {
+            Vector params = new Vector();
+            params.add(new Cartesian(lowX + fromX, lowY + fromY, lowZ + fromZ));
+            params.add(new Cartesian(lowX + toX, lowY + toY, lowZ + toZ));
+            Area region = Area.newArea(area.getOrigin(), params);
+            int points = raster.length;
+
+            double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+            double outside = logSpace ? Math.log(epsilon) : epsilon;
+            double[] values = null;
+            for (int i=0; i < pdfs.size(); i++) {
+                PDF pdf = (PDF) pdfs.elementAt(i);
+                double[] target = raster;
+                if (i > 0) {
+                    if (values == null) {
+                        values = new double[points];
+                    }
+                    target = values;
+                }
+
+                if (logSpace) {
+                    pdf.getLogProbabilities(region, 0, points, target, 0, outside);
+                } else {
+                    pdf.getProbabilities(region, 0, points, target, 0, outside);
+                }
+
+                if (i > 0) {
+                    for (int j=0; j < points; j++) {
+                        if (logSpace) {
+                            raster[j] += values[j];
+                        } else {
+                            raster[j] *= values[j];
+                        }
+                    }
+                }
+            }
+        }
+
+        private void reduce(double[] raster)
+        {
+            int best = 0;
+            for (int j=1; j < raster.length; j++) {
+                if (raster[j] > raster[best]) {
+                    best = j;
+                }
+            }
+            max = raster[best];
+            maxIndex = best;
+
+            sum = 0.0;
+            if (logSpace) {
+                for (int j=0; j < raster.length; j++) {
+                    sum += Math.exp(raster[j] - max);
+                }
+            } else {
+                for (int j=0; j < raster.length; j++) {
+                    sum += raster[j];
+                }
+            }
+        }
+
+        private int fromX, toX;
+        private int fromY, toY;
+        private int fromZ, toZ;
+        private boolean evaluate;
+        private double sum;
+        private double max;
+        private long maxIndex;
+    }
+
+    private MappedRaster raster;
+    private Slab[] slabs;
+    private double norm;
+    private double outside;
+    private boolean logSpace;
+    private Vector pdfs;
+    private Cartesian pointOfMaxProbability;
+    private int lowX, lowY, lowZ;
+    private int sizeX, sizeY, sizeZ;
+}
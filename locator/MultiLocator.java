@@ -0,0 +1,41 @@
+package locator;
+
+import java.util.HashMap;
+
+import plugins.Plugin;
+import config.Config;
+
+/**
+ * A locator for many targets at once, e.g. tagged assets.
+ * The plugins deliver their PDFs keyed by target, see TargetDrain. Every request is a TargetEpoch with a 
+ * compound PDF builder per target. The compound PDFs of the targets are calculated in parallel, so the 
+ * throughput grows with the number of cores.
+ * The single target requests of the Locator are still available.
+ */
+public class MultiLocator extends Locator {
+
+    public MultiLocator()
+    {
+        super();
+    }
+
+    /**
+     * triggers the plugins to create current PDFs for all targets they observe and returns the compound PDFs.
+     * As soon as all plugins finished or after the timeout exceeded the compound PDFs are calculated.
+     * Each compound PDF is relative to the origin of its own area.
+     * @return a map from the target IDs to their compound PDFs. PDFs of plugins which do not know about 
+     *         targets are found under the key null.
+     */
+    public HashMap locate()
+    {
+        Plugin[] triggered = getPlugins();
+
+        long deadline = System.currentTimeMillis() + Config.locator.Locator.getTimeout();
+        TargetEpoch epoch = new TargetEpoch(triggered.length, deadline);
+        for (int i=0; i < triggered.length; i++) {
+            triggered[i].trigger(epoch, deadline, i);
+        }
+
+        return epoch.await();
+    }
+}
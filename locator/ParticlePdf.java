@@ -0,0 +1,397 @@
+package locator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+
+import config.Config;
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import pdf.PDF;
+
+/**
+ * A compound PDF over some PDFs, estimated by particles.
+ * In contrast to the CompoundPdf not every point of the area is evaluated, but only a fixed number of
+ * particles. Thus the cost does not depend on the size of the area or the resolution of the grid.
+ * The particles are drawn uniformly from the area of the PDF with the smallest volume. Points outside of it
+ * get the factor epsilon, so they hardly carry any mass anyway. Then the particles are weighted by the PDFs
+ * one after the other. Whenever the weights degenerate, the particles are resampled systematically and
+ * jittered a little (see Config.locator.ParticlePdf.getJitter), so the copies of a particle spread out again.
+ * The probability of a point is the weight of the particles at this point. This is not a smooth estimate of
+ * the compound PDF: it is zero at every point without a particle, and only sums over regions approximate
+ * the compound probabilities.
+ */
+public class ParticlePdf extends FusedPdf {
+    /**
+     * The constructor.
+     * @param pdfs vector of PDF objects, which must have the same origin
+     */
+    public ParticlePdf(Vector pdfs)
+    {
+        this(pdfs, Config.locator.ParticlePdf.getNumberOfParticles(), new Random());
+    }
+
+    /**
+     * The constructor.
+     * @param pdfs vector of PDF objects, which must have the same origin
+     * @param count the number of particles
+     * @param random the source of random numbers, e.g. a seeded one for reproducible results
+     */
+    public ParticlePdf(Vector pdfs, int count, Random random)
+    {
+        super(CompoundPdf.calcArea(pdfs));
+
+        if (count < 1) {
+            throw new AssertionError();
+        }
+
+        this.random = random;
+        logEpsilon = Math.log(Config.pdf.CompoundPdf.getEpsilon());
+
+        PDF[] order = sortByVolume(pdfs);
+        draw(order[0].getArea(), count);
+        for (int i=0; i < order.length; i++) {
+            weight(order[i]);
+            if (i < order.length - 1 && getEffectiveSize() < count / 2) {
+                resample();
+            }
+        }
+        summarize();
+    }
+
+    /**
+     * @return the weight of the particles at the given point, which is zero if there is no particle.
+     * See the comment of the class.
+     */
+    public double density(int x, int y, int z)
+    {
+        int position = find(x, y, z);
+        if (position < 0) {
+            return 0.0;
+        }
+
+        return masses[position];
+    }
+
+    /**
+     * @return the point with the highest weight of particles
+     */
+    public Cartesian getPointOfMaxProbability()
+    {
+        return pointOfMaxProbability;
+    }
+
+    /**
+     * @return the weighted mean of the particles, rounded to the grid
+     */
+    public Cartesian getMean()
+    {
+        return mean;
+    }
+
+    /**
+     * @return the number of distinct points the particles are at
+     */
+    public int getNumberOfDistinctPoints()
+    {
+        return xs.length;
+    }
+
+    /**
+     * moves the particles, the mean and the point of maximum probability along with the area.
+     * The order of the particles does not change by a shift.
+     */
+    protected void moved(Cartesian shift)
+    {
+        for (int i=0; i < xs.length; i++) {
+            xs[i] += shift.getX();
+            ys[i] += shift.getY();
+            zs[i] += shift.getZ();
+        }
+        mean.move(shift);
+        pointOfMaxProbability.move(shift);
+    }
+
+    /**
+     * @return the PDFs ordered by the volume of their areas, the smallest first
+     */
+    private static PDF[] sortByVolume(Vector pdfs)
+    {
+        PDF[] order = (PDF[]) pdfs.toArray(new PDF[pdfs.size()]);
+        Arrays.sort(order, new java.util.Comparator() {
+            public int compare(Object a, Object b)
+            {
+                long volumeA = ((PDF) a).getArea().getNumberOfVoxels();
+                long volumeB = ((PDF) b).getArea().getNumberOfVoxels();
+                return volumeA < volumeB ? -1 : (volumeA > volumeB ? 1 : 0);
+            }
+        });
+
+        return order;
+    }
+
+    /**
+     * draw the particles uniformly from the given area.
+     * The particles are stored by their coordinates, so nothing depends on the size of the whole area. Even
+     * the area to draw from may have more points than an int can index.
+     */
+    private void draw(Area from, int count)
+    {
+        xs = new int[count];
+        ys = new int[count];
+        zs = new int[count];
+        logWeights = new double[count];
+        long points = from.getNumberOfVoxels();
+        for (int i=0; i < count; i++) {
+            // the 53 bits of a double are enough for any area which fits into memory
+            long index = Math.min(points - 1, (long) (random.nextDouble() * points));
+            Cartesian point = from.getVoxel(index);
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            zs[i] = point.getZ();
+        }
+    }
+
+    /**
+     * multiply the weights by the probabilities of a PDF.
+     * The weights are kept as logarithms to avoid an underflow.
+     */
+    private void weight(PDF pdf)
+    {
+        Area covered = pdf.getArea();
+        for (int i=0; i < xs.length; i++) {
+            if (covered.contains(xs[i], ys[i], zs[i])) {
+                logWeights[i] += pdf.logDensity(xs[i], ys[i], zs[i]);
+            } else {
+                logWeights[i] += logEpsilon;
+            }
+        }
+    }
+
+    /**
+     * @return the normalized weights
+     */
+    private double[] getWeights()
+    {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i=0; i < logWeights.length; i++) {
+            max = Math.max(max, logWeights[i]);
+        }
+
+        double[] weights = new double[logWeights.length];
+        double sum = 0;
+        for (int i=0; i < weights.length; i++) {
+            weights[i] = Math.exp(logWeights[i] - max);
+            sum += weights[i];
+        }
+        for (int i=0; i < weights.length; i++) {
+            weights[i] /= sum;
+        }
+
+        return weights;
+    }
+
+    /**
+     * @return the effective number of particles, 1 / sum of the squared normalized weights
+     */
+    private double getEffectiveSize()
+    {
+        double[] weights = getWeights();
+        double sum = 0;
+        for (int i=0; i < weights.length; i++) {
+            sum += weights[i] * weights[i];
+        }
+
+        return 1.0 / sum;
+    }
+
+    /**
+     * draw a new set of particles by systematic resampling.
+     * One random offset places n equidistant pointers on the cumulated weights. Every particle is copied as
+     * often as pointers hit its weight. Afterwards all weights are equal.
+     */
+    private void resample()
+    {
+        double[] weights = getWeights();
+        int count = xs.length;
+        int[] drawnX = new int[count];
+        int[] drawnY = new int[count];
+        int[] drawnZ = new int[count];
+
+        double step = 1.0 / count;
+        double pointer = random.nextDouble() * step;
+        double cumulated = weights[0];
+        int source = 0;
+        for (int i=0; i < count; i++) {
+            while (pointer > cumulated && source < count - 1) {
+                source += 1;
+                cumulated += weights[source];
+            }
+            drawnX[i] = xs[source];
+            drawnY[i] = ys[source];
+            drawnZ[i] = zs[source];
+            pointer += step;
+        }
+
+        xs = drawnX;
+        ys = drawnY;
+        zs = drawnZ;
+        Arrays.fill(logWeights, 0.0);
+        jitter();
+    }
+
+    /**
+     * move every particle by a random offset of at most the configured jitter per axis.
+     * A particle which would leave the area stays where it is.
+     */
+    private void jitter()
+    {
+        int reach = Config.locator.ParticlePdf.getJitter();
+        if (reach <= 0) {
+            return;
+        }
+
+        for (int i=0; i < xs.length; i++) {
+            int x = xs[i] + random.nextInt(2 * reach + 1) - reach;
+            int y = ys[i] + random.nextInt(2 * reach + 1) - reach;
+            int z = zs[i] + random.nextInt(2 * reach + 1) - reach;
+            if (area.contains(x, y, z)) {
+                xs[i] = x;
+                ys[i] = y;
+                zs[i] = z;
+            }
+        }
+    }
+
+    /**
+     * sum up the weights per point, and determine the mean and the maximum.
+     */
+    private void summarize()
+    {
+        final double[] weights = getWeights();
+
+        double x = 0, y = 0, z = 0;
+        for (int i=0; i < xs.length; i++) {
+            x += weights[i] * xs[i];
+            y += weights[i] * ys[i];
+            z += weights[i] * zs[i];
+        }
+        mean = new Cartesian((int) Math.round(x), (int) Math.round(y), (int) Math.round(z));
+
+        // particles at the same point are merged, sorted in the order of the iterator for the lookup
+        Integer[] order = new Integer[xs.length];
+        for (int i=0; i < order.length; i++) {
+            order[i] = new Integer(i);
+        }
+        Arrays.sort(order, new java.util.Comparator() {
+            public int compare(Object a, Object b)
+            {
+                int i = ((Integer) a).intValue();
+                int j = ((Integer) b).intValue();
+                return compareTo(xs[i], ys[i], zs[i], j);
+            }
+        });
+
+        int[] first = new int[order.length];
+        int distinct = 0;
+        for (int k=0; k < order.length; k++) {
+            int i = order[k].intValue();
+            if (distinct == 0 || compareTo(xs[i], ys[i], zs[i], first[distinct - 1]) != 0) {
+                first[distinct++] = i;
+            }
+        }
+
+        int[] pointX = new int[distinct];
+        int[] pointY = new int[distinct];
+        int[] pointZ = new int[distinct];
+        for (int k=0; k < distinct; k++) {
+            pointX[k] = xs[first[k]];
+            pointY[k] = ys[first[k]];
+            pointZ[k] = zs[first[k]];
+        }
+        masses = new double[distinct];
+        for (int i=0; i < xs.length; i++) {
+            masses[indexOf(pointX, pointY, pointZ, xs[i], ys[i], zs[i])] += weights[i];
+        }
+
+        int best = 0;
+        for (int k=0; k < distinct; k++) {
+            if (masses[k] > masses[best]) {
+                best = k;
+            }
+        }
+        pointOfMaxProbability = new Cartesian(pointX[best], pointY[best], pointZ[best]);
+
+        // from now on the particles are the distinct points
+        xs = pointX;
+        ys = pointY;
+        zs = pointZ;
+        logWeights = null;
+    }
+
+    /**
+     * compare a point with a particle in the order of the iterator, z first, then y, then x.
+     */
+    private int compareTo(int x, int y, int z, int particle)
+    {
+        if (z != zs[particle]) {
+            return z < zs[particle] ? -1 : 1;
+        }
+        if (y != ys[particle]) {
+            return y < ys[particle] ? -1 : 1;
+        }
+        if (x != xs[particle]) {
+            return x < xs[particle] ? -1 : 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the position of the point among the distinct points, or -1 if there is no particle
+     */
+    private int find(int x, int y, int z)
+    {
+        return indexOf(xs, ys, zs, x, y, z);
+    }
+
+    /**
+     * binary search of a point in sorted coordinate arrays.
+     * @return the position of the point, or -1 if it is not found
+     */
+    private static int indexOf(int[] pointX, int[] pointY, int[] pointZ, int x, int y, int z)
+    {
+        int low = 0;
+        int high = pointX.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order;
+            if (z != pointZ[middle]) {
+                order = z < pointZ[middle] ? -1 : 1;
+            } else if (y != pointY[middle]) {
+                order = y < pointY[middle] ? -1 : 1;
+            } else if (x != pointX[middle]) {
+                order = x < pointX[middle] ? -1 : 1;
+            } else {
+                return middle;
+            }
+
+            if (order < 0) {
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+
+        return -1;
+    }
+
+    private Random random;
+    private double logEpsilon;
+    /** the coordinates of the particles, after the construction those of the distinct points */
+    private int[] xs, ys, zs;
+    private double[] logWeights;
+    private double[] masses;
+    private Cartesian pointOfMaxProbability;
+    private Cartesian mean;
+}
@@ -0,0 +1,184 @@
+package locator;
+
+import java.util.HashSet;
+import java.util.Vector;
+
+import config.Config;
+import coordinates.Cartesian;
+import coordinates.area.Area;
+import pdf.PDF;
+
+/**
+ * Searches the point of maximum compound probability without evaluating the whole area.
+ * The compound probability is evaluated on a coarse grid first. Only the most promising points are refined,
+ * halving the step until it is one grid unit. At one grid unit the search climbs on until the best point is
+ * one whose 26 neighbours were all evaluated.
+ * So the result is always a maximum among its neighbours, but not necessarily the global one: a refinement
+ * only looks at the corners, edges and faces of the cell at half the step, not at every point of the cell,
+ * so a peak which is narrow compared to the coarse step may be missed. For a compound probability with a
+ * single peak which is wide compared to the coarse step, as for a few overlapping gauss distributions, the
+ * result is usually the one of CompoundPdf.getPointOfMaxProbability. Several peaks are followed as long as
+ * they fit into the beam. The step and the beam width are configured by Config.locator.PyramidSearch. The
+ * comparisons are done in log space, so there is no underflow.
+ * The cost is not logarithmic in the volume: the coarse grid alone has volume / step ^ 3 points, so the 
+ * search is still linear in the volume, only with a small factor (1 / 512 for a step of 8). The refinement 
+ * adds at most 27 * beam width points per level and log2(step) levels, plus as many per step of the climb.
+ * Coarser levels on top would make the cost independent of the volume, but they would miss even more peaks.
+ */
+public class PyramidSearch {
+    /**
+     * The constructor.
+     * The search is done immediately.
+     * @param pdfs vector of PDF objects
+     */
+    public PyramidSearch(Vector pdfs)
+    {
+        this.pdfs = pdfs;
+        area = CompoundPdf.calcArea(pdfs);
+        logEpsilon = Math.log(Config.pdf.CompoundPdf.getEpsilon());
+        evaluations = 0;
+        search();
+    }
+
+    /**
+     * @return point of maximum probability in Cartesian coordinates
+     */
+    public Cartesian getPointOfMaxProbability()
+    {
+        return pointOfMaxProbability;
+    }
+
+    /**
+     * @return the number of points where the compound probability was evaluated
+     */
+    public int getNumberOfEvaluations()
+    {
+        return evaluations;
+    }
+
+    private void search()
+    {
+        Cartesian lower = area.getLowerBound();
+        Cartesian upper = area.getUpperBound();
+        int beamWidth = Config.locator.PyramidSearch.getBeamWidth();
+        int step = Math.max(1, Config.locator.PyramidSearch.getCoarseStep());
+
+        // the coarse grid, one point in the center of every cell
+        Candidates candidates = new Candidates(beamWidth);
+        for (int z = lower.getZ() + step / 2; z <= upper.getZ() + step / 2; z += step) {
+            for (int y = lower.getY() + step / 2; y <= upper.getY() + step / 2; y += step) {
+                for (int x = lower.getX() + step / 2; x <= upper.getX() + step / 2; x += step) {
+                    candidates.offer(clamp(x, y, z, lower, upper));
+                }
+            }
+        }
+
+        // refine the best cells: the neighbours at half the step cover the cell of a candidate roughly.
+        // At one grid unit refine until the best point was a center itself, i.e. is a local maximum.
+        HashSet centers = new HashSet();
+        while (step > 1 || ! centers.contains(new Integer(candidates.indices[0]))) {
+            step = (step + 1) / 2;
+            Candidates refined = new Candidates(beamWidth);
+            for (int i=0; i < candidates.size; i++) {
+                if (step == 1) {
+                    centers.add(new Integer(candidates.indices[i]));
+                }
+                Cartesian center = area.getPoint(candidates.indices[i]);
+                for (int dz = -step; dz <= step; dz += step) {
+                    for (int dy = -step; dy <= step; dy += step) {
+                        for (int dx = -step; dx <= step; dx += step) {
+                            refined.offer(clamp(center.getX() + dx, center.getY() + dy, center.getZ() + dz, 
+                                        lower, upper));
+                        }
+                    }
+                }
+            }
+            candidates = refined;
+        }
+
+        pointOfMaxProbability = area.getPoint(candidates.indices[0]);
+    }
+
+    /**
+     * @return the index of the point of the area which is nearest to the given coordinates
+     */
+    private int clamp(int x, int y, int z, Cartesian lower, Cartesian upper)
+    {
+        x = Math.max(lower.getX(), Math.min(upper.getX(), x));
+        y = Math.max(lower.getY(), Math.min(upper.getY(), y));
+        z = Math.max(lower.getZ(), Math.min(upper.getZ(), z));
+
+        return area.indexOf(x, y, z);
+    }
+
+    /**
+     * @return the logarithm of the unnormalized compound probability
+     */
+    private double evaluate(Cartesian coordinates)
+    {
+        double p = 0.0;
+
+        evaluations += 1;
+        for (int i=0; i < pdfs.size(); i++) {
+            PDF pdf = (PDF) pdfs.elementAt(i);
+            int x = coordinates.getX();
+            int y = coordinates.getY();
+            int z = coordinates.getZ();
+            if (pdf.getArea().contains(x, y, z)) {
+                p += pdf.logDensity(x, y, z);
+            } else {
+                p += logEpsilon;
+            }
+        }
+
+        return p;
+    }
+
+    /**
+     * the best points of one level of the search, sorted by descending probability.
+     * Every point is evaluated only once per level.
+     */
+    private class Candidates {
+        Candidates(int capacity)
+        {
+            indices = new int[capacity];
+            values = new double[capacity];
+            size = 0;
+            seen = new HashSet();
+        }
+
+        void offer(int index)
+        {
+            if (! seen.add(new Integer(index))) {
+                return;
+            }
+
+            double value = evaluate(area.getPoint(index));
+            if (size == indices.length && value <= values[size - 1]) {
+                return;
+            }
+
+            // insertion sort, the beam is small
+            int i = Math.min(size, indices.length - 1);
+            while (i > 0 && values[i - 1] < value) {
+                indices[i] = indices[i - 1];
+                values[i] = values[i - 1];
+                i -= 1;
+            }
+            indices[i] = index;
+            values[i] = value;
+            size = Math.min(size + 1, indices.length);
+        }
+
+        int[] indices;
+        double[] values;
+        int size;
+        HashSet seen;
+    }
+
+    private Vector pdfs;
+    private Area area;
+    private double logEpsilon;
+    private int evaluations;
+    private Cartesian pointOfMaxProbability;
+}
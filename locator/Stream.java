@@ -0,0 +1,78 @@
+package locator;
+
+/**
+ * The thread of the streaming mode of the locator.
+ * The plugins are triggered periodically. The epochs are pipelined: right after the plugins were triggered 
+ * for the next epoch, the current one is fused and published. Thus the fusion runs while the plugins are 
+ * busy, and the update rate stays steady as long as the fusion is faster than the period.
+ * Every epoch has one period for the delivery of the PDFs, at most the timeout of the locator.
+ */
+class Stream extends Thread {
+    /**
+     * The constructor.
+     * @param locator the locator whose plugins are triggered
+     * @param period the time between two epochs in milliseconds
+     */
+    Stream(Locator locator, long period)
+    {
+        if (period < 1) {
+            throw new AssertionError();
+        }
+
+        this.locator = locator;
+        this.period = period;
+        finish = false;
+        setDaemon(true);
+        setName("locator stream");
+    }
+
+    public void run()
+    {
+        long next = System.currentTimeMillis();
+        Epoch current = locator.trigger(true, next + period);
+
+        while (! isFinished()) {
+            next += period;
+            long now = System.currentTimeMillis();
+            if (next > now) {
+                try {
+                    sleep(next - now);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+            } else {
+                // the fusion took longer than a period, so the missed epochs are skipped
+                next = now;
+            }
+
+            Epoch following = locator.trigger(true, next + period);
+
+            CompoundPdf pdf = locator.fuse(current);
+            if (pdf != null && ! isFinished()) {
+                locator.publish(pdf);
+            }
+            current = following;
+        }
+
+        current.await();
+    }
+
+    /**
+     * stop the stream.
+     * An epoch which is published right now is finished, all further ones are dropped.
+     */
+    synchronized void finish()
+    {
+        finish = true;
+        interrupt();
+    }
+
+    private synchronized boolean isFinished()
+    {
+        return finish;
+    }
+
+    private Locator locator;
+    private long period;
+    private boolean finish;
+}
@@ -0,0 +1,26 @@
+package locator;
+
+import pdf.PDF;
+
+/**
+ * The drain of a MultiLocator.
+ * Plugins which observe several targets check whether the drain they are triggered with is a TargetDrain. 
+ * If so, they deliver one PDF per target they see and finally call finished. Plugins which do not know 
+ * about targets just use the callback of the PDFDrain, which delivers a PDF for the target null and 
+ * finishes at once.
+ */
+public interface TargetDrain extends PDFDrain {
+    /**
+     * deliver the PDF of one target.
+     * @param target the ID of the target, which must implement equals and hashCode
+     * @param pdf the plugins PDF of this target
+     * @param handle the handle which was passed to the plugin when triggered
+     */
+    public void callback(Object target, PDF pdf, int handle);
+
+    /**
+     * tell that all PDFs of the plugin were delivered.
+     * @param handle the handle which was passed to the plugin when triggered
+     */
+    public void finished(int handle);
+}
@@ -0,0 +1,146 @@
+package locator;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import pdf.PDF;
+import utils.pool.Batch;
+import utils.pool.WorkerPool;
+
+/**
+ * One request of the MultiLocator.
+ * Just like an Epoch, but the PDFs are collected per target, every target with a CompoundPdfBuilder of its 
+ * own. Every plugin gets its own slot, which is passed as handle. A slot accepts PDFs until the plugin 
+ * finished or the deadline passed.
+ */
+class TargetEpoch implements TargetDrain {
+    /**
+     * The constructor.
+     * @param slots the number of plugins which are triggered
+     * @param deadline the absolut system time after which no PDF is accepted any more
+     */
+    TargetEpoch(int slots, long deadline)
+    {
+        this.deadline = deadline;
+        builders = new HashMap();
+        finished = new boolean[slots];
+        pending = slots;
+        closed = false;
+    }
+
+    public void callback(PDF pdf, int handle)
+    {
+        callback(null, pdf, handle);
+        finished(handle);
+    }
+
+    public void callback(Object target, PDF pdf, int handle)
+    {
+        CompoundPdfBuilder builder;
+        synchronized (this) {
+            if (! accepts(handle)) {
+                return;
+            }
+            builder = (CompoundPdfBuilder) builders.get(target);
+            if (builder == null) {
+                // the PDFs are fused at the end, one target per job
+                builder = new CompoundPdfBuilder(false);
+                builders.put(target, builder);
+            }
+        }
+
+        builder.add(pdf);
+    }
+
+    public synchronized void finished(int handle)
+    {
+        if (! accepts(handle)) {
+            return;
+        }
+
+        finished[handle] = true;
+        pending -= 1;
+        if (pending == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * wait until all plugins finished or the deadline passed, whatever comes first.
+     * Afterwards the compound PDFs of all targets are calculated in parallel, one target per job of the 
+     * default WorkerPool.
+     * @return a map from the targets to their compound PDFs
+     */
+    HashMap await()
+    {
+        synchronized (this) {
+            long remaining = deadline - System.currentTimeMillis();
+            while (pending > 0 && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            closed = true;
+        }
+
+        HashMap results = new HashMap();
+        Batch batch = new Batch(WorkerPool.getDefault());
+        for (Iterator i = builders.entrySet().iterator(); i.hasNext(); ) {
+            Map.Entry entry = (Map.Entry) i.next();
+            batch.add(new Fusion(entry.getKey(), (CompoundPdfBuilder) entry.getValue(), results));
+        }
+        batch.run();
+
+        return results;
+    }
+
+    /**
+     * @return whether a PDF of the plugin with the given slot is accepted now
+     */
+    private boolean accepts(int handle)
+    {
+        if (closed || handle < 0 || handle >= finished.length || finished[handle]) {
+            return false;
+        }
+
+        return System.currentTimeMillis() < deadline;
+    }
+
+    /**
+     * calculates the compound PDF of one target.
+     */
+    private class Fusion implements Runnable {
+        Fusion(Object target, CompoundPdfBuilder builder, HashMap results)
+        {
+            this.target = target;
+            this.builder = builder;
+            this.results = results;
+        }
+
+        public void run()
+        {
+            CompoundPdf pdf = builder.build();
+            if (pdf == null) {
+                return;
+            }
+            synchronized (results) {
+                results.put(target, pdf);
+            }
+        }
+
+        private Object target;
+        private CompoundPdfBuilder builder;
+        private HashMap results;
+    }
+
+    private long deadline;
+    private HashMap builders;
+    private boolean[] finished;
+    private int pending;
+    private boolean closed;
+}
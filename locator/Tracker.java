@@ -0,0 +1,281 @@
+package locator;
+
+import java.util.Vector;
+
+import config.Config;
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import coordinates.LocalFrame;
+import pdf.PDF;
+import pdf.RasterDistribution;
+import utils.pool.Batch;
+import utils.pool.WorkerPool;
+
+/**
+ * A recursive bayesian filter on top of a locator.
+ * The posterior of an epoch is kept. For the next epoch it is blurred by the motion model of the target and
+ * used as prior, which is fused with the PDFs of the plugins. The prior only covers the cuboid which holds
+ * most of the mass of the posterior, and the compound PDF is restricted to the intersection (see CompoundPdf),
+ * so every epoch evaluates a small volume only.
+ * The tracker stays in the frame of its first epoch until it is reset.
+ */
+public class Tracker {
+    /**
+     * The constructor.
+     * @param locator the locator whose plugins deliver the PDFs
+     */
+    public Tracker(Locator locator)
+    {
+        this.locator = locator;
+        posterior = null;
+    }
+
+    /**
+     * triggers the plugins and fuses their PDFs with the prediction of the last posterior.
+     * If no plugin delivers, the posterior is the prediction alone.
+     * @return the posterior, or null if neither a posterior nor a PDF is available
+     */
+    public synchronized CompoundPdf update()
+    {
+        Vector pdfs = locator.collectPdfs();
+
+        CompoundPdfBuilder builder;
+        if (posterior == null) {
+            builder = new CompoundPdfBuilder(false);
+        } else {
+            // the prior comes first, so it sets the frame
+            builder = new CompoundPdfBuilder(false, true);
+            builder.add(predict());
+        }
+        for (int i=0; i < pdfs.size(); i++) {
+            builder.add((PDF) pdfs.elementAt(i));
+        }
+
+        CompoundPdf result = builder.build();
+        if (result != null) {
+            posterior = result;
+        }
+
+        return posterior;
+    }
+
+    /**
+     * forget the posterior, so the next epoch starts from nothing.
+     */
+    public synchronized void reset()
+    {
+        posterior = null;
+    }
+
+    /**
+     * @return the frame of the posterior, or null if there is none
+     */
+    public synchronized LocalFrame getFrame()
+    {
+        if (posterior == null) {
+            return null;
+        }
+
+        return posterior.getFrame();
+    }
+
+    /**
+     * the prior of the next epoch.
+     * The posterior is cropped to the cuboid which holds the configured mass, expanded by the reach of the 
+     * motion model and then blurred axis by axis.
+     * Only the domain of the posterior is read, as the points outside of it have the negligible value 
+     * epsilon ^ n. So the cost does not depend on the union of the areas.
+     */
+    private PDF predict()
+    {
+        double variance = Config.locator.Tracker.getMotionVariance();
+        int reach = (int) Math.ceil(3 * Math.sqrt(variance));
+
+        Area area = posterior.getDomain();
+        double[] values = posterior.getDomainProbabilities();
+
+        Cartesian lower = area.getLowerBound();
+        Cartesian upper = area.getUpperBound();
+        int[] size = {
+            upper.getX() - lower.getX() + 1, upper.getY() - lower.getY() + 1, upper.getZ() - lower.getZ() + 1
+        };
+
+        // trim the same share of the mass from both ends of every axis
+        double tail = (1.0 - Config.locator.Tracker.getPriorMass()) / 6;
+        double[][] marginals = marginals(values, size);
+        int[] low = new int[3];
+        int[] high = new int[3];
+        for (int axis=0; axis < 3; axis++) {
+            double[] marginal = marginals[axis];
+            low[axis] = 0;
+            high[axis] = marginal.length - 1;
+            double sum = marginal[low[axis]];
+            while (low[axis] < high[axis] && sum + marginal[low[axis] + 1] <= tail) {
+                low[axis] += 1;
+                sum += marginal[low[axis]];
+            }
+            sum = marginal[high[axis]];
+            while (high[axis] > low[axis] && sum + marginal[high[axis] - 1] <= tail) {
+                high[axis] -= 1;
+                sum += marginal[high[axis]];
+            }
+            low[axis] -= reach;
+            high[axis] += reach;
+        }
+
+        // copy the cropped posterior into the expanded box, which is zero outside of the posterior
+        int[] box = {high[0] - low[0] + 1, high[1] - low[1] + 1, high[2] - low[2] + 1};
+        double[] prior = new double[box[0] * box[1] * box[2]];
+        for (int z = Math.max(0, low[2]); z <= Math.min(size[2] - 1, high[2]); z++) {
+            for (int y = Math.max(0, low[1]); y <= Math.min(size[1] - 1, high[1]); y++) {
+                for (int x = Math.max(0, low[0]); x <= Math.min(size[0] - 1, high[0]); x++) {
+                    prior[((z - low[2]) * box[1] + y - low[1]) * box[0] + x - low[0]] 
+                        = values[(z * size[1] + y) * size[0] + x];
+                }
+            }
+        }
+
+        if (variance > 0) {
+            double[] kernel = kernel(variance, reach);
+            for (int axis=0; axis < 3; axis++) {
+                prior = blur(prior, box, axis, kernel);
+            }
+        }
+        normalize(prior);
+
+        // the prior never drops below the value of the points it does not cover
+        double epsilon = Config.pdf.CompoundPdf.getEpsilon();
+        for (int i=0; i < prior.length; i++) {
+            prior[i] = Math.max(prior[i], epsilon);
+        }
+
+        Vector corners = new Vector();
+        corners.add(new Cartesian(lower.getX() + low[0], lower.getY() + low[1], lower.getZ() + low[2]));
+        corners.add(new Cartesian(lower.getX() + high[0], lower.getY() + high[1], lower.getZ() + high[2]));
+
+        return new RasterDistribution(Area.newArea(area.getOrigin(), corners), prior);
+    }
+
+    /**
+     * @return for every axis the sums of the values over the planes orthogonal to it
+     */
+    private static double[][] marginals(double[] values, int[] size)
+    {
+        double[][] marginals = {new double[size[0]], new double[size[1]], new double[size[2]]};
+        int index = 0;
+        for (int z=0; z < size[2]; z++) {
+            for (int y=0; y < size[1]; y++) {
+                double sum = 0;
+                for (int x=0; x < size[0]; x++) {
+                    marginals[0][x] += values[index];
+                    sum += values[index++];
+                }
+                marginals[1][y] += sum;
+                marginals[2][z] += sum;
+            }
+        }
+
+        return marginals;
+    }
+
+    /**
+     * @return the normalized, discrete gauss kernel from -reach to reach
+     */
+    private static double[] kernel(double variance, int reach)
+    {
+        double[] kernel = new double[2 * reach + 1];
+        double sum = 0;
+        for (int i = -reach; i <= reach; i++) {
+            kernel[i + reach] = Math.exp(-1.0 * i * i / (2.0 * variance));
+            sum += kernel[i + reach];
+        }
+        for (int i=0; i < kernel.length; i++) {
+            kernel[i] /= sum;
+        }
+
+        return kernel;
+    }
+
+    /**
+     * convolve the values with the kernel along one axis.
+     * Values beyond the border are zero. The lines along the axis are split into parts which are processed in
+     * parallel.
+     * @return a new array
+     */
+    private static double[] blur(double[] values, int[] size, int axis, double[] kernel)
+    {
+        double[] result = new double[values.length];
+        int lines = values.length / size[axis];
+        int parts = Math.max(1, Math.min(lines, Config.pdf.CompoundPdf.getNumberOfSlabs()));
+
+        Batch batch = new Batch(WorkerPool.getDefault());
+        for (int i=0; i < parts; i++) {
+            int from = (int) ((long) lines * i / parts);
+            int to = (int) ((long) lines * (i + 1) / parts);
+            batch.add(new Blur(values, result, size, axis, kernel, from, to));
+        }
+        batch.run();
+
+        return result;
+    }
+
+    /**
+     * convolves a range of lines along one axis.
+     */
+    private static class Blur implements Runnable {
+        Blur(double[] values, double[] result, int[] size, int axis, double[] kernel, int from, int to)
+        {
+            this.values = values;
+            this.result = result;
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            length = size[axis];
+            stride = axis == 0 ? 1 : (axis == 1 ? size[0] : size[0] * size[1]);
+        }
+
+        public void run()
+        {
+            int reach = kernel.length / 2;
+
+            for (int line = from; line < to; line++) {
+                // the lines are numbered by the coordinates of the other axes
+                int start = line / stride * stride * length + line % stride;
+                for (int i=0; i < length; i++) {
+                    double sum = 0;
+                    int low = Math.max(0, i - reach);
+                    int high = Math.min(length - 1, i + reach);
+                    for (int j = low; j <= high; j++) {
+                        sum += kernel[j - i + reach] * values[start + j * stride];
+                    }
+                    result[start + i * stride] = sum;
+                }
+            }
+        }
+
+        private double[] values;
+        private double[] result;
+        private double[] kernel;
+        private int from;
+        private int to;
+        private int length;
+        private int stride;
+    }
+
+    private static void normalize(double[] values)
+    {
+        double sum = 0;
+        for (int i=0; i < values.length; i++) {
+            sum += values[i];
+        }
+        if (sum <= 0) {
+            return;
+        }
+        for (int i=0; i < values.length; i++) {
+            values[i] /= sum;
+        }
+    }
+
+    private Locator locator;
+    private CompoundPdf posterior;
+}
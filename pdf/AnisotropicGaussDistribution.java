@@ -0,0 +1,237 @@
+package pdf;
+
+import coordinates.area.Area;
+import coordinates.area.ScanLineVisitor;
+import coordinates.Cartesian;
+
+/**
+ * A concrete implementation of a PDF, the gauss distribution with a full covariance matrix.
+ * This allows different deviations per axis, as well as correlations between the axes, e.g. for GPS with its
+ * large vertical error.
+ * The covariance is decomposed once by Cholesky to get its inverse and determinant. When evaluating a region
+ * the exponent is updated incrementally along the x axis, so a scan line needs three calls of exp and then
+ * two multiplications per point.
+ */
+public class AnisotropicGaussDistribution extends PDF implements Gaussian {
+    /**
+     * The constructor.
+     * @param area the area of the PDF, the mean is its origin until the PDF is moved
+     * @param covariance the symmetric, positive definite 3x3 covariance matrix in grid units ^ 2
+     */
+    public AnisotropicGaussDistribution(Area area, double[][] covariance)
+    {
+        super(area);
+        meanX = 0;
+        meanY = 0;
+        meanZ = 0;
+        calcInverse(covariance);
+    }
+
+    public double density(int x, int y, int z)
+    {
+        return java.lang.Math.exp(-0.5 * calcExponent(x - meanX, y - meanY, z - meanZ)) / norm;
+    }
+
+    public double logDensity(int x, int y, int z)
+    {
+        return -0.5 * calcExponent(x - meanX, y - meanY, z - meanZ) - java.lang.Math.log(norm);
+    }
+
+    public Cartesian getMean()
+    {
+        return new Cartesian(meanX, meanY, meanZ);
+    }
+
+    public double[][] getInverseCovariance()
+    {
+        double[][] copy = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            System.arraycopy(inverse[i], 0, copy[i], 0, 3);
+        }
+
+        return copy;
+    }
+
+    protected void moved(Cartesian shift)
+    {
+        meanX += shift.getX();
+        meanY += shift.getY();
+        meanZ += shift.getZ();
+    }
+
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new RecurrenceEvaluation(values, offset - from, outside, false), from, to);
+    }
+
+    public void getLogProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new RecurrenceEvaluation(values, offset - from, outside, true), from, to);
+    }
+
+    /**
+     * evaluates scan lines by the recurrence of the exponent.
+     * Along a line the exponent is q(x) = a x^2 + 2 b x + c. The recurrence starts at the point of the maximum
+     * and runs to both ends, so values only underflow where the probability is negligible anyway.
+     * For logarithms the exponent itself is updated, which needs no exp at all.
+     */
+    private class RecurrenceEvaluation implements ScanLineVisitor {
+        RecurrenceEvaluation(double[] values, int base, double outside, boolean log)
+        {
+            this.values = values;
+            this.base = base;
+            this.outside = outside;
+            this.log = log;
+            lower = area.getLowerBound();
+            upper = area.getUpperBound();
+            // ratio between the ratios of two neighbouring steps
+            step = java.lang.Math.exp(-inverse[0][0]);
+            logNorm = java.lang.Math.log(norm);
+        }
+
+        public void visit(int fromX, int toX, int y, int z, int index)
+        {
+            int i = base + index;
+
+            // the part of the line which is covered by the area
+            int lowX = java.lang.Math.max(fromX, lower.getX());
+            int highX = java.lang.Math.min(toX, upper.getX());
+            if (y < lower.getY() || y > upper.getY() || z < lower.getZ() || z > upper.getZ()) {
+                highX = lowX - 1;
+            }
+
+            for (int x = fromX; x <= toX; x++) {
+                if (x < lowX || x > highX) {
+                    values[i + x - fromX] = outside;
+                }
+            }
+            if (lowX > highX) {
+                return;
+            }
+
+            // the exponent is a function of the distance to the mean
+            double dy = y - meanY;
+            double dz = z - meanZ;
+            double a = inverse[0][0];
+            double b = inverse[0][1] * dy + inverse[0][2] * dz;
+            double c = inverse[1][1] * dy * dy + 2 * inverse[1][2] * dy * dz + inverse[2][2] * dz * dz;
+
+            int peak = (int) java.lang.Math.round(-b / a) + meanX;
+            peak = java.lang.Math.max(lowX, java.lang.Math.min(highX, peak));
+            double dx = peak - meanX;
+            double q = (a * dx + 2 * b) * dx + c;
+
+            if (log) {
+                // q(x+1) - q(x) = a (2x + 1) + 2b
+                double e = q;
+                for (int x = peak; x <= highX; x++) {
+                    values[i + x - fromX] = -0.5 * e - logNorm;
+                    e += a * (2 * (x - meanX) + 1) + 2 * b;
+                }
+                e = q;
+                for (int x = peak - 1; x >= lowX; x--) {
+                    e -= a * (2 * (x - meanX) + 1) + 2 * b;
+                    values[i + x - fromX] = -0.5 * e - logNorm;
+                }
+                return;
+            }
+
+            double value = java.lang.Math.exp(-0.5 * q) / norm;
+            values[i + peak - fromX] = value;
+
+            // p(x+1) / p(x) = exp(-(a (2x + 1) + 2b) / 2)
+            double e = value;
+            double ratio = java.lang.Math.exp(-0.5 * (a * (2 * dx + 1) + 2 * b));
+            for (int x = peak + 1; x <= highX; x++) {
+                e *= ratio;
+                ratio *= step;
+                values[i + x - fromX] = e;
+            }
+
+            // p(x-1) / p(x) = exp((a (2x - 1) + 2b) / 2)
+            e = value;
+            ratio = java.lang.Math.exp(0.5 * (a * (2 * dx - 1) + 2 * b));
+            for (int x = peak - 1; x >= lowX; x--) {
+                e *= ratio;
+                ratio *= step;
+                values[i + x - fromX] = e;
+            }
+        }
+
+        private double[] values;
+        private int base;
+        private double outside;
+        private boolean log;
+        private Cartesian lower;
+        private Cartesian upper;
+        private double step;
+        private double logNorm;
+    }
+
+    /**
+     * calculate the quadratic form d^T * inverse * d.
+     */
+    private double calcExponent(double x, double y, double z)
+    {
+        return inverse[0][0] * x * x + inverse[1][1] * y * y + inverse[2][2] * z * z
+            + 2 * (inverse[0][1] * x * y + inverse[0][2] * x * z + inverse[1][2] * y * z);
+    }
+
+    /**
+     * calculate the inverse covariance and the norm factor by Cholesky decomposition.
+     */
+    private void calcInverse(double[][] covariance)
+    {
+        // covariance = l * l^T
+        double[][] l = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            for (int j=0; j <= i; j++) {
+                double sum = covariance[i][j];
+                for (int k=0; k < j; k++) {
+                    sum -= l[i][k] * l[j][k];
+                }
+                if (i == j) {
+                    if (sum <= 0) {
+                        // not positive definite
+                        throw new AssertionError();
+                    }
+                    l[i][i] = java.lang.Math.sqrt(sum);
+                } else {
+                    l[i][j] = sum / l[j][j];
+                }
+            }
+        }
+
+        // invert the lower triangular matrix by forward substitution
+        double[][] m = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            m[i][i] = 1.0 / l[i][i];
+            for (int j=0; j < i; j++) {
+                double sum = 0.0;
+                for (int k=j; k < i; k++) {
+                    sum -= l[i][k] * m[k][j];
+                }
+                m[i][j] = sum / l[i][i];
+            }
+        }
+
+        // inverse = m^T * m
+        inverse = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            for (int j=0; j < 3; j++) {
+                double sum = 0.0;
+                for (int k=java.lang.Math.max(i, j); k < 3; k++) {
+                    sum += m[k][i] * m[k][j];
+                }
+                inverse[i][j] = sum;
+            }
+        }
+
+        double sqrtDeterminant = l[0][0] * l[1][1] * l[2][2];
+        norm = java.lang.Math.pow(2 * java.lang.Math.PI, 1.5) * sqrtDeterminant;
+    }
+
+    private double[][] inverse;
+    private double norm;
+    private int meanX, meanY, meanZ;
+}
@@ -6,14 +6,18 @@ import java.util.Iterator;
 import utils.index.Index;
 import coordinates.area.AreaException;
 import coordinates.area.Area;
+import coordinates.area.VoxelVisitor;
 import coordinates.Cartesian;
+import coordinates.WGS84;
 
 /**
  * A container of PDFs.
  * This is to allow local exceptions for PDFs.
  * There is one master pdfs an arbitraty amount of exception PDFS. The exception PDFs may not overlap.
+ * The probability mass of the master within an exception is taken from a summed area table, so the master is
+ * evaluated only once, no matter how many exceptions there are.
  */
-class Container extends PDF {
+public class Container extends PDF {
     /**
      * Standart constructor.
      * @param master the master PDF
@@ -24,25 +28,142 @@ class Container extends PDF {
         super(master.getArea());
 
         this.master = master;
-        index = Index.newIndex(master.getArea().getOrigin());
+        masterSums = null;
+        index = Index.newIndex(master.getArea().getOrigin(), exclusions.size());
 
         for (Iterator i = exclusions.iterator(); i.hasNext(); ) {
             addPdf((PDF) i.next());
         }
     }
 
-    public Probability getProbability(Cartesian coordinates) throws AreaException 
+    public double density(int x, int y, int z)
     {
-        checkArea(coordinates);
-
-        IndexUnit unit = (IndexUnit) index.get(coordinates);
+        IndexUnit unit = (IndexUnit) index.get(x, y, z);
 
         if (unit == null) {
-            return master.getProbability(coordinates);
+            return master.density(x, y, z);
         } else {
-            Probability prob = unit.pdf.getProbability(coordinates);
-            return prob.scale(unit.condProb);
+            return unit.pdf.density(x, y, z) * unit.condProb;
+        }
+    }
+
+    /**
+     * The master is evaluated in bulk first. Then the points of every exception within the range are 
+     * overwritten by the exception's values.
+     * An exception is only evaluated within the layers the range spans, so a region which is evaluated in
+     * many slabs does not evaluate the whole exception for every slab.
+     */
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        master.getProbabilities(region, from, to, values, offset, outside);
+        if (from >= to) {
+            return;
+        }
+
+        Area range = calcBounds(region, from, to);
+        for (Index.Iterator i = index.iterator(); i.hasNext(); ) {
+            IndexUnit unit = (IndexUnit) i.next();
+            Area overlap = range.intersect(unit.area);
+            if (overlap.isEmpty()) {
+                continue;
+            }
+
+            double[] exception = new double[overlap.getNumberOfPoints()];
+            unit.pdf.getProbabilities(overlap, 0, exception.length, exception, 0, outside);
+            overlap.forEachVoxel(new Overwrite(region, from, to, values, offset, exception, unit.condProb));
+        }
+    }
+
+    /**
+     * determine a cuboid which covers a range of points of a region.
+     * The range covers the layers between its first and its last point. If it is within one layer, only
+     * the rows between them, and if it is within one row, only the points between them.
+     */
+    private static Area calcBounds(Area region, int from, int to)
+    {
+        Cartesian first = region.getPoint(from);
+        Cartesian last = region.getPoint(to - 1);
+        Cartesian lower = region.getLowerBound();
+        Cartesian upper = region.getUpperBound();
+
+        lower.setZ(first.getZ());
+        upper.setZ(last.getZ());
+        if (first.getZ() == last.getZ()) {
+            lower.setY(first.getY());
+            upper.setY(last.getY());
+            if (first.getY() == last.getY()) {
+                lower.setX(first.getX());
+                upper.setX(last.getX());
+            }
+        }
+
+        Vector params = new Vector();
+        params.add(lower);
+        params.add(upper);
+        return Area.newArea(region.getOrigin(), params);
+    }
+
+    /**
+     * copies the scaled values of an exception to the points of a range of a region.
+     */
+    private class Overwrite implements VoxelVisitor {
+        Overwrite(Area region, int from, int to, double[] values, int offset, double[] exception, double scale)
+        {
+            this.region = region;
+            this.from = from;
+            this.to = to;
+            this.values = values;
+            this.offset = offset;
+            this.exception = exception;
+            this.scale = scale;
+            next = 0;
+        }
+
+        public void visit(int x, int y, int z)
+        {
+            int index = region.indexOf(x, y, z);
+            if (from <= index && index < to) {
+                values[offset + index - from] = exception[next] * scale;
+            }
+            next += 1;
         }
+
+        private Area region;
+        private int from;
+        private int to;
+        private double[] values;
+        private int offset;
+        private double[] exception;
+        private double scale;
+        private int next;
+    }
+
+    /**
+     * move the master and all exceptions.
+     * The area of the container is the one of the master, so the master moves it.
+     */
+    public void move(WGS84 origin)
+    {
+        if (origin == area.getOrigin()) {
+            return;
+        }
+
+        master.move(origin);
+
+        Vector units = new Vector();
+        for (Index.Iterator i = index.iterator(); i.hasNext(); ) {
+            units.add(i.next());
+        }
+
+        index = Index.newIndex(origin, units.size());
+        for (int i=0; i < units.size(); i++) {
+            IndexUnit unit = (IndexUnit) units.elementAt(i);
+            unit.pdf.move(origin);
+            index.add((Area) unit.pdf.getArea().clone(), unit);
+        }
+
+        // the table refers to the old coordinates
+        masterSums = null;
     }
 
     /**
@@ -58,11 +179,10 @@ class Container extends PDF {
         Area diff;
         diff = master.getArea().intersect(pdf.getArea());
 
-        Probability conditionalProb = new Probability(0);
-        for (Iterator i = diff.iterator(); i.hasNext(); ) {
-            Cartesian pos = (Cartesian) i.next();
-            conditionalProb.add(master.getProbability(pos));
+        if (masterSums == null) {
+            masterSums = new SummedAreaTable(master);
         }
+        double conditionalProb = masterSums.getMass(diff);
         
         // the exclusions may not overlap
         for (Index.Iterator i = index.iterator(); i.hasNext(); ) {
@@ -77,7 +197,7 @@ class Container extends PDF {
     }
 
     private class IndexUnit {
-        public IndexUnit(Area area, Probability condProb, PDF pdf)
+        public IndexUnit(Area area, double condProb, PDF pdf)
         {
             this.area = area;
             this.condProb = condProb;
@@ -85,11 +205,12 @@ class Container extends PDF {
         }
         
         public Area area;
-        public Probability condProb;
+        public double condProb;
         public PDF pdf;
     };
     
     private Index index;
     private PDF master;
+    private SummedAreaTable masterSums;
     
 }
@@ -1,33 +1,224 @@
 package pdf;
 
 import coordinates.area.Area;
-import coordinates.area.AreaException;
+import coordinates.area.ScanLineVisitor;
 import coordinates.Cartesian;
 
 /**
- * A concrete implementation of a PDF, the gauss distribution
+ * A concrete implementation of a PDF, the gauss distribution.
+ * The distribution is isotropic, so it factorizes into one factor per axis. The factors are precalculated 
+ * for the extent of the area, so a probability is the product of three table lookups.
+ * The same holds for the logarithms, which are the sum of three table lookups.
+ * The mean is the origin of the area, until the PDF is moved.
+ * The tables only depend on the variance and the bounds relative to the mean, so they are shared through the
+ * TemplateCache. A sensor creating PDFs of the same shape every epoch calculates them once.
  */
-public class GaussDistribution extends PDF {
+public class GaussDistribution extends PDF implements Gaussian {
     public GaussDistribution(Area area, double variance)
     {
         super(area);
         this.variance = variance;
+        meanX = 0;
+        meanY = 0;
+        meanZ = 0;
+        calcTables();
     }
 
-    public Probability getProbability(Cartesian coordinates) throws AreaException 
+    public double density(int x, int y, int z)
     {
-        checkArea(coordinates);
+        return lookup(tableX, lowX, meanX, x) * lookup(tableY, lowY, meanY, y) * lookup(tableZ, lowZ, meanZ, z);
+    }
+
+    public double logDensity(int x, int y, int z)
+    {
+        return logLookup(logTableX, lowX, meanX, x) + logLookup(logTableY, lowY, meanY, y) 
+            + logLookup(logTableZ, lowZ, meanZ, z);
+    }
+
+    public Cartesian getMean()
+    {
+        return new Cartesian(meanX, meanY, meanZ);
+    }
+
+    public double[][] getInverseCovariance()
+    {
+        double[][] inverse = new double[3][3];
+        for (int i=0; i < 3; i++) {
+            inverse[i][i] = 1.0 / variance;
+        }
+
+        return inverse;
+    }
+
+    protected void moved(Cartesian shift)
+    {
+        meanX += shift.getX();
+        meanY += shift.getY();
+        meanZ += shift.getZ();
+        calcTables();
+    }
+
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new TableEvaluation(values, offset - from, outside, false), from, to);
+    }
+
+    public void getLogProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new TableEvaluation(values, offset - from, outside, true), from, to);
+    }
+
+    /**
+     * evaluates scan lines by table lookups.
+     * The factor of y and z is calculated once per line, so there is one multiplication per point.
+     */
+    private class TableEvaluation implements ScanLineVisitor {
+        TableEvaluation(double[] values, int base, double outside, boolean log)
+        {
+            this.values = values;
+            this.base = base;
+            this.outside = outside;
+            this.log = log;
+        }
+
+        public void visit(int fromX, int toX, int y, int z, int index)
+        {
+            int i = base + index;
+            int ty = y - lowY;
+            int tz = z - lowZ;
+
+            if (ty < 0 || ty >= tableY.length || tz < 0 || tz >= tableZ.length) {
+                for (int x = fromX; x <= toX; x++) {
+                    values[i++] = outside;
+                }
+                return;
+            }
+
+            double[] table = log ? logTableX : tableX;
+            double factorYZ = log ? logTableY[ty] + logTableZ[tz] : tableY[ty] * tableZ[tz];
+            for (int x = fromX; x <= toX; x++) {
+                int tx = x - lowX;
+                if (tx < 0 || tx >= table.length) {
+                    values[i++] = outside;
+                } else if (log) {
+                    values[i++] = table[tx] + factorYZ;
+                } else {
+                    values[i++] = table[tx] * factorYZ;
+                }
+            }
+        }
+
+        private double[] values;
+        private int base;
+        private double outside;
+        private boolean log;
+    }
 
-        double norm = java.lang.Math.sqrt(2 * java.lang.Math.PI * variance);
+    /**
+     * get the factor of one axis.
+     * The value is looked up in the table. For coordinates the table does not cover it is calculated.
+     */
+    private double lookup(double[] table, int low, int mean, int coordinate)
+    {
+        int index = coordinate - low;
+        if (index >= 0 && index < table.length) {
+            return table[index];
+        }
+
+        return calcFactor(coordinate - mean) / axisNorm;
+    }
+
+    private double logLookup(double[] table, int low, int mean, int coordinate)
+    {
+        int index = coordinate - low;
+        if (index >= 0 && index < table.length) {
+            return table[index];
+        }
+
+        return calcLogFactor(coordinate - mean);
+    }
+
+    /**
+     * calculate the factor tables for the three axes.
+     * The norm is distributed equally to all factors.
+     */
+    private void calcTables()
+    {
+        Cartesian lower = area.getLowerBound();
+        Cartesian upper = area.getUpperBound();
+
+        axisNorm = java.lang.Math.pow(2 * java.lang.Math.PI * variance, 1.0 / 6.0);
+
+        lowX = lower.getX();
+        lowY = lower.getY();
+        lowZ = lower.getZ();
+        double[][] axis = getTables(lowX - meanX, upper.getX() - meanX);
+        tableX = axis[0];
+        logTableX = axis[1];
+        axis = getTables(lowY - meanY, upper.getY() - meanY);
+        tableY = axis[0];
+        logTableY = axis[1];
+        axis = getTables(lowZ - meanZ, upper.getZ() - meanZ);
+        tableZ = axis[0];
+        logTableZ = axis[1];
+    }
+
+    /**
+     * get the table and the log table of one axis from the cache, or calculate them.
+     * @param low the lowest distance to the mean
+     * @param high the highest distance to the mean
+     */
+    private double[][] getTables(int low, int high)
+    {
+        TemplateCache cache = TemplateCache.getDefault();
+        String key = "GaussDistribution " + variance + " " + low + " " + high;
+        double[][] tables = (double[][]) cache.get(key);
+        if (tables == null) {
+            tables = new double[][] {calcTable(low, high), calcLogTable(low, high)};
+            cache.put(key, tables);
+        }
+
+        return tables;
+    }
 
-        double x = coordinates.getX() * coordinates.getX();
-        double y = coordinates.getY() * coordinates.getY();
-        double z = coordinates.getZ() * coordinates.getZ();
+    /**
+     * @param low the lowest distance to the mean
+     * @param high the highest distance to the mean
+     */
+    private double[] calcTable(int low, int high)
+    {
+        double[] table = new double[high - low + 1];
+        for (int i=0; i < table.length; i++) {
+            table[i] = calcFactor(low + i) / axisNorm;
+        }
 
-        double probability = java.lang.Math.exp(-1 * (x+y+z) / (2.0 * variance)) / norm;
+        return table;
+    }
+
+    private double[] calcLogTable(int low, int high)
+    {
+        double[] table = new double[high - low + 1];
+        for (int i=0; i < table.length; i++) {
+            table[i] = calcLogFactor(low + i);
+        }
 
-        return new Probability(probability);
+        return table;
+    }
+
+    private double calcFactor(int coordinate)
+    {
+        return java.lang.Math.exp(-1.0 * coordinate * coordinate / (2.0 * variance));
+    }
+
+    private double calcLogFactor(int coordinate)
+    {
+        return -1.0 * coordinate * coordinate / (2.0 * variance) - java.lang.Math.log(axisNorm);
     }
     
     private double variance;
+    private double axisNorm;
+    private double[] tableX, tableY, tableZ;
+    private double[] logTableX, logTableY, logTableZ;
+    private int lowX, lowY, lowZ;
+    private int meanX, meanY, meanZ;
 }
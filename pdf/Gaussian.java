@@ -0,0 +1,20 @@
+package pdf;
+
+import coordinates.Cartesian;
+
+/**
+ * A PDF which is a gauss distribution.
+ * The product of gauss distributions is a gauss distribution again, so these PDFs can be fused in closed
+ * form, see locator.GaussianProductPdf.
+ */
+public interface Gaussian {
+    /**
+     * @return the mean in Cartesian coordinates of the area's origin
+     */
+    public Cartesian getMean();
+
+    /**
+     * @return the inverse of the covariance matrix in 1 / grid units ^ 2
+     */
+    public double[][] getInverseCovariance();
+}
@@ -2,8 +2,7 @@ package pdf;
 
 import coordinates.area.*;
 import coordinates.Cartesian;
-import java.util.Iterator;
-import logger.Logger;
+import coordinates.WGS84;
 
 /**
  * Abstract PDF class.
@@ -22,11 +21,98 @@ public abstract class PDF {
         return area;
     }
 
-    public abstract Probability getProbability(Cartesian coordinates) throws AreaException;
+    /**
+     * move the PDF to an other origin, e.g. the one of a LocalFrame.
+     * The distribution stays where it is in the real world, only its coordinates change.
+     * Nothing happens if the area has this origin already.
+     */
+    public void move(WGS84 origin)
+    {
+        if (origin == area.getOrigin()) {
+            return;
+        }
+
+        Cartesian shift = area.getOrigin().diff(origin);
+        area.move(origin);
+        moved(shift);
+    }
+
+    /**
+     * get the probability at the given point.
+     * @return a new Probability object, which the caller may modify
+     */
+    public Probability getProbability(Cartesian coordinates) throws AreaException
+    {
+        checkArea(coordinates);
+
+        return new Probability(density(coordinates.getX(), coordinates.getY(), coordinates.getZ()));
+    }
+
+    /**
+     * get the natural logarithm of the probability at the given point.
+     */
+    public double getLogProbability(Cartesian coordinates) throws AreaException
+    {
+        checkArea(coordinates);
+
+        return logDensity(coordinates.getX(), coordinates.getY(), coordinates.getZ());
+    }
+
+    /**
+     * get the probability at the given point as a primitive.
+     * The area is not checked, so the caller has to make sure the point lies within it. Nothing is allocated.
+     */
+    public abstract double density(int x, int y, int z);
+
+    /**
+     * get the natural logarithm of the probability at the given point as a primitive.
+     * Concrete PDFs should override this if the logarithm can be calculated directly, to avoid an underflow
+     * of tiny probabilities.
+     */
+    public double logDensity(int x, int y, int z)
+    {
+        return java.lang.Math.log(density(x, y, z));
+    }
+
+    /**
+     * get the probabilities of a range of points of a region at once.
+     * In contrast to getProbability no exception is thrown for points the area of this PDF does not cover.
+     * These points get the given value instead, e.g. epsilon. Concrete PDFs should override this with an 
+     * implementation which does not evaluate point by point.
+     * @param region the region, which must have the same origin as the area of this PDF
+     * @param from the index of the first point within the region, see Area.indexOf
+     * @param to the index after the last point
+     * @param values the array to fill
+     * @param offset the position in values where the value of the first point is stored
+     * @param outside the value for points which are not covered
+     */
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachVoxel(new Evaluation(values, offset, outside, false), from, to);
+    }
+
+    /**
+     * get the logarithms of the probabilities of a range of points of a region at once.
+     * See getProbabilities. 
+     * @param outside the logarithm for points which are not covered
+     */
+    public void getLogProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachVoxel(new Evaluation(values, offset, outside, true), from, to);
+    }
 
 
     /**** protected ****/
 
+    /**
+     * called by move after the area was moved.
+     * Concrete PDFs which keep coordinates of their own, e.g. a mean, have to move them as well.
+     * @param shift the vector every point was moved by
+     */
+    protected void moved(Cartesian shift)
+    {
+    }
+
     protected void checkArea(Cartesian coordinates) throws AreaException
     {
         if (! area.contains(coordinates)) {
@@ -36,6 +122,33 @@ public abstract class PDF {
 
     protected Area area;
 
+    /**
+     * evaluates a PDF point by point for getProbabilities and getLogProbabilities.
+     */
+    private class Evaluation implements VoxelVisitor {
+        Evaluation(double[] values, int offset, double outside, boolean log)
+        {
+            this.values = values;
+            this.index = offset;
+            this.outside = outside;
+            this.log = log;
+        }
+
+        public void visit(int x, int y, int z)
+        {
+            double value = outside;
+            if (area.contains(x, y, z)) {
+                value = log ? logDensity(x, y, z) : density(x, y, z);
+            }
+            values[index++] = value;
+        }
+
+        private double[] values;
+        private int index;
+        private double outside;
+        private boolean log;
+    }
+
     /**
      * print values along the x, y or z axes apprioriate for visualisation by gnuplot.
      * printing is done directly and not by the logger.
@@ -43,7 +156,7 @@ public abstract class PDF {
      */
     public void print(String what)
     {
-        int sel;
+        final int sel;
 
         if (what.equals("x")) {
             sel = 0;
@@ -53,29 +166,31 @@ public abstract class PDF {
             sel = 2;
         }
 
-        try {
-            Iterator i = area.iterator();
-            while(i.hasNext()) {
-                Cartesian coord = (Cartesian) i.next();
+        area.forEachVoxel(new VoxelVisitor() {
+            public void visit(int x, int y, int z)
+            {
                 if (sel == 0) {
-                    if (coord.getY() == 0 && coord.getZ() == 0) {
-                        System.out.println(coord.getX() + " " + getProbability(coord).getValue());
+                    if (y == 0 && z == 0) {
+                        printValue(x, x, y, z);
                     }
                 }
                 else if (sel == 1) {
-                    if (coord.getX() == 0 && coord.getZ() == 0) {
-                        System.out.println(coord.getY() + " " + getProbability(coord).getValue());
+                    if (x == 0 && z == 0) {
+                        printValue(y, x, y, z);
                     }
                 }
                 else if (sel == 2) {
-                    if (coord.getX() == 0 && coord.getY() == 0) {
-                        System.out.println(coord.getZ() + " " + getProbability(coord).getValue());
+                    if (x == 0 && y == 0) {
+                        printValue(z, x, y, z);
                     }
                 }
             }
-        } catch (AreaException e) {
-            Logger.fatal("PDF", "print", "This should never happen");
-        }
+        });
+    }
+
+    private void printValue(int position, int x, int y, int z)
+    {
+        System.out.println(position + " " + density(x, y, z));
     }
 }
 
@@ -9,6 +9,15 @@ public class Probability {
         this.prob = prob;
     }
 
+    /**
+     * create a probability from its natural logarithm.
+     * @param logProb the logarithm of the probability
+     */
+    public static Probability fromLogarithm(double logProb)
+    {
+        return new Probability(Math.exp(logProb));
+    }
+
     public Probability scale(Probability factor)
     {
         prob *= factor.prob;
@@ -41,5 +50,13 @@ public class Probability {
         return prob;
     }
 
+    /**
+     * @return the natural logarithm of the probability
+     */
+    public double getLogarithm()
+    {
+        return Math.log(prob);
+    }
+
     private double prob;
 }
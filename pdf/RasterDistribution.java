@@ -0,0 +1,95 @@
+package pdf;
+
+import coordinates.area.Area;
+import coordinates.area.ScanLineVisitor;
+import coordinates.Cartesian;
+
+/**
+ * A concrete implementation of a PDF, given by a value for every point of its area.
+ * This allows to use the result of a calculation as a PDF again, e.g. the prediction of a Tracker.
+ */
+public class RasterDistribution extends PDF {
+    /**
+     * The constructor.
+     * The values are not copied, so they may not be changed afterwards.
+     * @param area the area of the PDF
+     * @param values the probabilities of all points of the area, in the order of its iterator, see Area.indexOf
+     */
+    public RasterDistribution(Area area, double[] values)
+    {
+        super(area);
+
+        if (values.length != area.getNumberOfPoints()) {
+            throw new AssertionError();
+        }
+
+        this.values = values;
+    }
+
+    public double density(int x, int y, int z)
+    {
+        int index = area.indexOf(x, y, z);
+        if (index == -1) {
+            return 0.0;
+        }
+
+        return values[index];
+    }
+
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new Copy(values, offset - from, outside, false), from, to);
+    }
+
+    public void getLogProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new Copy(values, offset - from, outside, true), from, to);
+    }
+
+    /**
+     * copies the covered part of every scan line from the raster.
+     */
+    private class Copy implements ScanLineVisitor {
+        Copy(double[] target, int base, double outside, boolean log)
+        {
+            this.target = target;
+            this.base = base;
+            this.outside = outside;
+            this.log = log;
+            lower = area.getLowerBound();
+            upper = area.getUpperBound();
+        }
+
+        public void visit(int fromX, int toX, int y, int z, int index)
+        {
+            int i = base + index;
+
+            // the part of the line which is covered by the area
+            int lowX = Math.max(fromX, lower.getX());
+            int highX = Math.min(toX, upper.getX());
+            if (y < lower.getY() || y > upper.getY() || z < lower.getZ() || z > upper.getZ()) {
+                highX = lowX - 1;
+            }
+
+            int source = lowX <= highX ? area.indexOf(lowX, y, z) : 0;
+            for (int x = fromX; x <= toX; x++) {
+                if (x < lowX || x > highX) {
+                    target[i++] = outside;
+                } else if (log) {
+                    target[i++] = Math.log(values[source++]);
+                } else {
+                    target[i++] = values[source++];
+                }
+            }
+        }
+
+        private double[] target;
+        private int base;
+        private double outside;
+        private boolean log;
+        private Cartesian lower;
+        private Cartesian upper;
+    }
+
+    private double[] values;
+}
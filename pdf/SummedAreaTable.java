@@ -0,0 +1,107 @@
+package pdf;
+
+import coordinates.area.Area;
+import coordinates.area.VoxelVisitor;
+import coordinates.Cartesian;
+
+/**
+ * A three dimensional summed area table over a PDF.
+ * Every entry holds the sum of the probabilities of all points with lower or equal coordinates. Thus the 
+ * probability mass of any cuboid is answered by eight lookups, no matter how big the cuboid is.
+ * Building the table takes one pass over the area of the PDF.
+ */
+public class SummedAreaTable {
+    /**
+     * The constructor.
+     * @param pdf the PDF whose probabilities are summed up
+     */
+    public SummedAreaTable(PDF pdf)
+    {
+        Area area = pdf.getArea();
+        lower = area.getLowerBound();
+        upper = area.getUpperBound();
+
+        // one extra row of zeros in front of every axis avoids special cases at the borders
+        sizeX = upper.getX() - lower.getX() + 2;
+        sizeY = upper.getY() - lower.getY() + 2;
+        sizeZ = upper.getZ() - lower.getZ() + 2;
+        sums = new double[sizeX * sizeY * sizeZ];
+
+        // the points are visited along x first, then y, then z, so all predecessors are summed up already
+        area.forEachVoxel(new Summation(pdf));
+    }
+
+    /**
+     * adds up the probabilities of a PDF point by point.
+     */
+    private class Summation implements VoxelVisitor {
+        Summation(PDF pdf)
+        {
+            this.pdf = pdf;
+        }
+
+        public void visit(int px, int py, int pz)
+        {
+            int x = px - lower.getX() + 1;
+            int y = py - lower.getY() + 1;
+            int z = pz - lower.getZ() + 1;
+
+            double p = pdf.density(px, py, pz);
+
+            sums[index(x, y, z)] = p
+                + sums[index(x - 1, y, z)] + sums[index(x, y - 1, z)] + sums[index(x, y, z - 1)]
+                - sums[index(x - 1, y - 1, z)] - sums[index(x - 1, y, z - 1)] - sums[index(x, y - 1, z - 1)]
+                + sums[index(x - 1, y - 1, z - 1)];
+        }
+
+        private PDF pdf;
+    }
+
+    /**
+     * get the probability mass of the given area.
+     * Only the part of the bounding box of the area which lies within the table is taken into account.
+     * @param box the area, which must have the same origin as the PDF
+     * @return the sum of the probabilities of all points of the area
+     */
+    public double getMass(Area box)
+    {
+        if (box.isEmpty()) {
+            return 0.0;
+        }
+
+        Cartesian from = box.getLowerBound();
+        Cartesian to = box.getUpperBound();
+
+        // indices of the last point before the box and the last point within it
+        int x0 = clamp(from.getX() - lower.getX(), sizeX);
+        int y0 = clamp(from.getY() - lower.getY(), sizeY);
+        int z0 = clamp(from.getZ() - lower.getZ(), sizeZ);
+        int x1 = clamp(to.getX() - lower.getX() + 1, sizeX);
+        int y1 = clamp(to.getY() - lower.getY() + 1, sizeY);
+        int z1 = clamp(to.getZ() - lower.getZ() + 1, sizeZ);
+
+        if (x0 >= x1 || y0 >= y1 || z0 >= z1) {
+            return 0.0;
+        }
+
+        return sums[index(x1, y1, z1)]
+            - sums[index(x0, y1, z1)] - sums[index(x1, y0, z1)] - sums[index(x1, y1, z0)]
+            + sums[index(x0, y0, z1)] + sums[index(x0, y1, z0)] + sums[index(x1, y0, z0)]
+            - sums[index(x0, y0, z0)];
+    }
+
+    private int clamp(int value, int size)
+    {
+        return Math.max(0, Math.min(size - 1, value));
+    }
+
+    private int index(int x, int y, int z)
+    {
+        return (z * sizeY + y) * sizeX + x;
+    }
+
+    private double[] sums;
+    private Cartesian lower;
+    private Cartesian upper;
+    private int sizeX, sizeY, sizeZ;
+}
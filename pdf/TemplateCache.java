@@ -0,0 +1,107 @@
+package pdf;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import config.Config;
+
+/**
+ * A cache of precalculated kernel templates, e.g. the factor tables of a GaussDistribution.
+ * A template must only depend on the shape of a PDF relative to its mean, not on its position. Then PDFs of
+ * the same shape, like those a sensor creates every epoch, share one template however they are moved.
+ * Templates are shared, so they may not be changed after they were put into the cache.
+ * The least recently used template is evicted when the cache is full.
+ */
+public class TemplateCache {
+
+    /**
+     * the cache shared by all PDFs.
+     * It is created on first use. Its capacity is a config value.
+     * @return the default cache
+     */
+    public static synchronized TemplateCache getDefault()
+    {
+        if (defaultCache == null) {
+            defaultCache = new TemplateCache(Config.pdf.TemplateCache.getCapacity());
+        }
+
+        return defaultCache;
+    }
+
+    /**
+     * The constructor.
+     * @param capacity the maximum number of templates
+     */
+    public TemplateCache(int capacity)
+    {
+        if (capacity < 1) {
+            throw new AssertionError();
+        }
+
+        final int maximum = capacity;
+        templates = new LinkedHashMap(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                return size() > maximum;
+            }
+        };
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * look up a template.
+     * Every call counts as either a hit or a miss.
+     * @param key the key, which must describe the type and all parameters the template depends on
+     * @return the template, or null if it is not cached
+     */
+    public synchronized Object get(Object key)
+    {
+        Object template = templates.get(key);
+        if (template == null) {
+            misses += 1;
+        } else {
+            hits += 1;
+        }
+
+        return template;
+    }
+
+    /**
+     * add a template, which may evict the least recently used one.
+     */
+    public synchronized void put(Object key, Object template)
+    {
+        templates.put(key, template);
+    }
+
+    /**
+     * @return the number of templates in the cache
+     */
+    public synchronized int size()
+    {
+        return templates.size();
+    }
+
+    /**
+     * @return the number of lookups which found a template
+     */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups which did not find a template
+     */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    private static TemplateCache defaultCache = null;
+
+    private LinkedHashMap templates;
+    private long hits;
+    private long misses;
+}
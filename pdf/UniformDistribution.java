@@ -1,7 +1,7 @@
 package pdf;
 
 import coordinates.area.Area;
-import coordinates.area.AreaException;
+import coordinates.area.ScanLineVisitor;
 import coordinates.Cartesian;
 
 /**
@@ -11,15 +11,61 @@ class UniformDistribution extends PDF {
     public UniformDistribution(Area area)
     {
         super(area);
-        probability = new Probability(1.0 / area.getVolume());
+        value = 1.0 / area.getVolume();
     }
     
-    public Probability getProbability(Cartesian coordinates) throws AreaException
+    public double density(int x, int y, int z)
     {
-        checkArea(coordinates);
-        
-        return probability; 
+        return value;
     }
 
-    private Probability probability;
+    public void getProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new ConstantEvaluation(values, offset - from, value, outside), 
+                from, to);
+    }
+
+    public void getLogProbabilities(Area region, int from, int to, double[] values, int offset, double outside)
+    {
+        region.forEachScanLine(new ConstantEvaluation(values, offset - from, java.lang.Math.log(value), 
+                    outside), from, to);
+    }
+
+    /**
+     * fills the covered part of every scan line with the constant value.
+     */
+    private class ConstantEvaluation implements ScanLineVisitor {
+        ConstantEvaluation(double[] values, int base, double value, double outside)
+        {
+            this.values = values;
+            this.base = base;
+            this.value = value;
+            this.outside = outside;
+            lower = area.getLowerBound();
+            upper = area.getUpperBound();
+        }
+
+        public void visit(int fromX, int toX, int y, int z, int index)
+        {
+            int i = base + index;
+            boolean covered = lower.getY() <= y && y <= upper.getY() && lower.getZ() <= z && z <= upper.getZ();
+
+            for (int x = fromX; x <= toX; x++) {
+                if (covered && lower.getX() <= x && x <= upper.getX()) {
+                    values[i++] = value;
+                } else {
+                    values[i++] = outside;
+                }
+            }
+        }
+
+        private double[] values;
+        private int base;
+        private double value;
+        private double outside;
+        private Cartesian lower;
+        private Cartesian upper;
+    }
+
+    private double value;
 }
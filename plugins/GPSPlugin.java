@@ -23,7 +23,7 @@ import java.lang.Math;
 import java.lang.Thread;
 
  
-public class GPSPlugin extends AbstractPlugin {
+public class GPSPlugin extends PooledPlugin {
 
     public GPSPlugin()
     {
@@ -0,0 +1,203 @@
+package plugins;
+
+import java.util.Vector;
+
+import services.ServiceUser;
+import locator.PDFDrain;
+import pdf.PDF;
+import utils.pool.WorkerPool;
+import config.Config;
+
+/**
+ * An abstract plugin without a thread of its own.
+ * In contrast to the AbstractPlugin the PDFs of all pooled plugins are calculated by one shared WorkerPool. 
+ * Thus an idle plugin costs no thread, and a trigger only queues a job instead of waking up a thread.
+ * A plugin calculates one PDF at a time. If it is triggered meanwhile, the trigger is queued and run 
+ * afterwards, one after the other. Every trigger belongs to a request of its own, which needs a PDF of its
+ * own, as the request moves the PDF into its frame. Triggers whose timeout passed while queued are dropped.
+ */
+public abstract class PooledPlugin implements ServiceUser, Plugin {
+
+    protected PooledPlugin()
+    {
+        services = null;
+        loaded = false;
+        running = false;
+        pending = new Vector();
+    }
+
+    /*******  Plugin *****/
+
+    /**
+     * trigger the caclulation of the current PDF.
+     * @param drain the callback object
+     * @param timeout the maximum absolut system time until the PDF must be returned
+     * @param handle a handle which is to be passed at callback
+     */
+    public void trigger(PDFDrain drain, long timeout, int handle)
+    {
+        Job job = new Job(drain, timeout, handle);
+        synchronized (this) {
+            if (! loaded) {
+                return;
+            }
+            if (running) {
+                pending.add(job);
+                return;
+            }
+            running = true;
+        }
+
+        getPool().execute(job);
+    }
+
+    /**
+     * load the plugin.
+     */
+    public synchronized void load()
+    {
+        loaded = true;
+    }
+
+    /**
+     * unload the plugin.
+     * The ressources are freed as soon as a running calculation is finished.
+     */
+    public void unload()
+    {
+        synchronized (this) {
+            loaded = false;
+            pending.clear();
+            if (running) {
+                return;
+            }
+        }
+
+        freeRessources();
+    }
+
+    /*****  ServiceUser *****/
+
+    /**
+     * assign a list of services to the plugin.
+     */
+    public void setServices(Vector services)
+    {
+        this.services = services;
+    }
+    
+    /**
+     * check which services are currently assigned to the plugin
+     */
+    public Vector getServices()
+    {
+        return services;
+    }
+    
+    /**
+     * get a list of service objects of the appropriate type
+     */
+    public abstract Vector getRequiredServices();
+    
+    /*** protected ***/
+
+    /**
+     * check if all required services where assigned to the plugin.
+     * @return true if they were.
+     */
+    protected abstract boolean needMoreServices();
+
+    /**
+     * calculate the current PDF.
+     */
+    protected abstract PDF createPdf(long timeout);
+
+    /**
+     * prepare to get deleted, so free all aquired ressource
+     */
+    protected abstract void freeRessources();
+
+    protected Vector services;
+
+    /*****  private ****/
+
+    /**
+     * the pool shared by all pooled plugins.
+     * It is not the default pool, as plugins may block while waiting for their sensors.
+     */
+    private static synchronized WorkerPool getPool()
+    {
+        if (pool == null) {
+            pool = new WorkerPool(Config.plugin.PooledPlugin.getPoolSize());
+        }
+
+        return pool;
+    }
+
+    /**
+     * one calculation of a PDF.
+     */
+    private class Job implements Runnable {
+        Job(PDFDrain drain, long timeout, int handle)
+        {
+            this.drain = drain;
+            this.timeout = timeout;
+            this.handle = handle;
+        }
+
+        public void run()
+        {
+            try {
+                if (! needMoreServices()) {
+                    PDF pdf = createPdf(timeout);
+                    if (pdf != null && System.currentTimeMillis() < timeout) {
+                        drain.callback(pdf, handle);
+                    }
+                }
+            } finally {
+                finished();
+            }
+        }
+
+        private PDFDrain drain;
+        private long timeout;
+        private int handle;
+    }
+
+    /**
+     * called after every job. Runs the oldest pending job whose timeout did not pass yet, or frees the 
+     * ressources if the plugin was unloaded.
+     */
+    private void finished()
+    {
+        Job next = null;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            while (next == null && pending.size() > 0) {
+                next = (Job) pending.remove(0);
+                if (next.timeout <= now) {
+                    next = null;
+                }
+            }
+            if (next == null) {
+                running = false;
+                if (loaded) {
+                    return;
+                }
+            }
+        }
+
+        if (next != null) {
+            getPool().execute(next);
+        } else {
+            freeRessources();
+        }
+    }
+
+    private static WorkerPool pool = null;
+
+    private boolean loaded;
+    private boolean running;
+    /** the queued jobs, the oldest first */
+    private Vector pending;
+}
@@ -0,0 +1,103 @@
+package utils.index;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import coordinates.WGS84;
+
+/**
+ * concrete implementation of an index, a uniform grid of buckets.
+ * The room is divided into cubic cells. Every object is registered in all cells its area overlaps, so a 
+ * lookup only checks the objects of one cell. This is fast if the areas are of similar size as the cells.
+ */
+class GridIndex extends Index {
+    /**
+     * The constructor.
+     * @param origin the origin all areas are moved to
+     * @param cellSize the edge length of a cell in grid units
+     */
+    public GridIndex(WGS84 origin, int cellSize)
+    {
+        this.origin = origin;
+        this.cellSize = cellSize;
+        cells = new HashMap();
+    }
+
+    public void add(Area area, Object unit)
+    {
+        area.move(origin);
+        add(unit);
+
+        Unit entry = new Unit(area, unit);
+        Cartesian lower = area.getLowerBound();
+        Cartesian upper = area.getUpperBound();
+        for (int z = cell(lower.getZ()); z <= cell(upper.getZ()); z++) {
+            for (int y = cell(lower.getY()); y <= cell(upper.getY()); y++) {
+                for (int x = cell(lower.getX()); x <= cell(upper.getX()); x++) {
+                    Long key = key(x, y, z);
+                    Vector bucket = (Vector) cells.get(key);
+                    if (bucket == null) {
+                        bucket = new Vector();
+                        cells.put(key, bucket);
+                    }
+                    bucket.add(entry);
+                }
+            }
+        }
+    }
+
+    public Object get(int x, int y, int z) 
+    {
+        Vector bucket = (Vector) cells.get(key(cell(x), cell(y), cell(z)));
+        if (bucket == null) {
+            return null;
+        }
+
+        // the buckets are in the order the objects were added
+        for (int i=0; i < bucket.size(); i++) {
+            Unit unit = (Unit) bucket.elementAt(i);
+            if (unit.area.contains(x, y, z)) {
+                return unit.object;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the cell of a coordinate, rounding towards negative infinity
+     */
+    private int cell(int coordinate)
+    {
+        if (coordinate >= 0) {
+            return coordinate / cellSize;
+        }
+        return -((-coordinate - 1) / cellSize) - 1;
+    }
+
+    /**
+     * @return the key of a cell, 21 bits per axis
+     */
+    private static Long key(int x, int y, int z)
+    {
+        long mask = (1L << 21) - 1;
+        return new Long(((x & mask) << 42) | ((y & mask) << 21) | (z & mask));
+    }
+
+    private class Unit {
+        Unit(Area area, Object object)
+        {
+            this.area = area;
+            this.object = object;
+        }
+
+        Area area;
+        Object object;
+    }
+
+    private HashMap cells;
+    private WGS84 origin;
+    private int cellSize;
+}
@@ -4,14 +4,62 @@ import java.util.Vector;
 import coordinates.area.Area;
 
 import coordinates.*;
+import config.Config;
+import logger.Logger;
 
 /**
  * An abstract class for indexing objects in an area.
  * A factory is provided to easily exchange the implementation.
  */
 abstract public class Index {
+    /**
+     * factory for new index objects.
+     * The implementation is selected by Config.utils.index.Index.getType.
+     * @param origin the origin all areas are moved to
+     */
     public static Index newIndex(WGS84 origin)
     {
+        return newIndex(origin, -1);
+    }
+
+    /**
+     * factory for new index objects.
+     * If the implementation is not configured explicitly it is chosen by the expected number of objects.
+     * For a few objects a linear search is fastest, for many an R-tree.
+     * @param origin the origin all areas are moved to
+     * @param expectedUnits the expected number of objects, or -1 if unknown
+     */
+    public static Index newIndex(WGS84 origin, int expectedUnits)
+    {
+        String type = Config.utils.index.Index.getType();
+
+        if (type.equals("auto")) {
+            if (expectedUnits >= 0 && expectedUnits <= Config.utils.index.Index.getLinearSearchLimit()) {
+                type = "linear";
+            } else {
+                type = "rtree";
+            }
+        }
+
+        return newIndex(type, origin);
+    }
+
+    /**
+     * factory for new index objects of the given implementation, regardless of the config.
+     * @param type "linear", "grid" or "rtree", see Config.utils.index.Index.getType
+     * @param origin the origin all areas are moved to
+     */
+    public static Index newIndex(String type, WGS84 origin)
+    {
+        if (type.equals("linear")) {
+            return new LinearSearch(origin);
+        } else if (type.equals("grid")) {
+            return new GridIndex(origin, Config.utils.index.GridIndex.getCellSize());
+        } else if (type.equals("rtree")) {
+            return new RTree(origin);
+        }
+
+        Logger.error("Index", "newIndex", "unknown index type " + type + ", using linear search");
         return new LinearSearch(origin);
     }
 
@@ -55,11 +103,20 @@ abstract public class Index {
     /**
      * get the first object of the index whose area covers the given point.
      */
-    public abstract Object get(Cartesian coordinates);
+    public Object get(Cartesian coordinates)
+    {
+        return get(coordinates.getX(), coordinates.getY(), coordinates.getZ());
+    }
+
+    /**
+     * get the first object of the index whose area covers the given point.
+     * This is the same as get(Cartesian), but does not need an object.
+     */
+    public abstract Object get(int x, int y, int z);
     
     protected Index()
     {
-
+        units = new Vector();
     }
 
     protected void add(Object unit)
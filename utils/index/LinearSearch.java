@@ -1,7 +1,6 @@
 package utils.index;
 
 import coordinates.area.Area;
-import coordinates.Cartesian;
 import coordinates.WGS84;
 
 /**
@@ -11,6 +10,7 @@ class LinearSearch extends Index {
     public LinearSearch(WGS84 origin)
     {
         this.origin = origin;
+        units = new java.util.Vector();
     }
 
     public void add(Area area, Object unit)
@@ -20,12 +20,12 @@ class LinearSearch extends Index {
         units.add(new Unit(area, unit));
     }
 
-    public Object get(Cartesian coordinates) 
+    public Object get(int x, int y, int z) 
     {
         
         for (java.util.Iterator i = units.iterator(); i.hasNext(); ) {
             Unit unit = (Unit) i.next();
-            if (unit.area.contains(coordinates)) {
+            if (unit.area.contains(x, y, z)) {
                 return unit.object;
             }
         }
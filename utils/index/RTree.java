@@ -0,0 +1,260 @@
+package utils.index;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Vector;
+
+import coordinates.area.Area;
+import coordinates.Cartesian;
+import coordinates.WGS84;
+
+/**
+ * concrete implementation of an index, the R-tree.
+ * Every node of the tree covers the bounding box of its children, so a lookup only descends into nodes which
+ * cover the point. For n objects this takes about log(n) steps, independent of the size of the areas.
+ * A node which gets too full is split in halves along its longest axis.
+ */
+class RTree extends Index {
+    public RTree(WGS84 origin)
+    {
+        this.origin = origin;
+        root = new Node(true);
+        sequence = 0;
+    }
+
+    public void add(Area area, Object unit)
+    {
+        area.move(origin);
+        add(unit);
+        insert(new Unit(area, unit, sequence++));
+    }
+
+    public Object get(int x, int y, int z) 
+    {
+        Unit unit = search(root, x, y, z, null);
+        if (unit == null) {
+            return null;
+        }
+
+        return unit.object;
+    }
+
+    /**
+     * find the first added object whose area covers the point.
+     * @param best the best object found so far
+     */
+    private Unit search(Node node, int x, int y, int z, Unit best)
+    {
+        if (node.children.size() == 0 || ! node.covers(x, y, z)) {
+            return best;
+        }
+
+        for (int i=0; i < node.children.size(); i++) {
+            if (node.leaf) {
+                Unit unit = (Unit) node.children.elementAt(i);
+                if (unit.covers(x, y, z) && unit.area.contains(x, y, z)
+                  &&(best == null || unit.sequence < best.sequence))
+                {
+                    best = unit;
+                }
+            } else {
+                best = search((Node) node.children.elementAt(i), x, y, z, best);
+            }
+        }
+
+        return best;
+    }
+
+    private void insert(Unit unit)
+    {
+        Node node = root;
+        while (! node.leaf) {
+            node = chooseChild(node, unit);
+        }
+        node.add(unit);
+
+        // split overflowing nodes and update the bounding boxes up to the root
+        while (node != null) {
+            if (node.children.size() > MAX_ENTRIES) {
+                Node sibling = split(node);
+                if (node.parent == null) {
+                    root = new Node(false);
+                    root.add(node);
+                    root.add(sibling);
+                } else {
+                    node.parent.add(sibling);
+                }
+            }
+            node.calcBounds();
+            node = node.parent;
+        }
+    }
+
+    /**
+     * @return the child whose bounding box grows least when adding the entry
+     */
+    private Node chooseChild(Node node, Entry entry)
+    {
+        Node best = null;
+        double bestGrowth = 0, bestVolume = 0;
+
+        for (int i=0; i < node.children.size(); i++) {
+            Node child = (Node) node.children.elementAt(i);
+            double volume = child.volume();
+            double growth = child.volumeWith(entry) - volume;
+            if (best == null || growth < bestGrowth || (growth == bestGrowth && volume < bestVolume)) {
+                best = child;
+                bestGrowth = growth;
+                bestVolume = volume;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * move the upper half of the children along the longest axis to a new node.
+     * @return the new node
+     */
+    private Node split(Node node)
+    {
+        int longest = 0;
+        for (int axis=1; axis < 3; axis++) {
+            if (node.upper[axis] - node.lower[axis] > node.upper[longest] - node.lower[longest]) {
+                longest = axis;
+            }
+        }
+
+        final int axis = longest;
+        Collections.sort(node.children, new Comparator() {
+            public int compare(Object o1, Object o2)
+            {
+                Entry e1 = (Entry) o1;
+                Entry e2 = (Entry) o2;
+                long c1 = (long) e1.lower[axis] + e1.upper[axis];
+                long c2 = (long) e2.lower[axis] + e2.upper[axis];
+                return c1 < c2 ? -1 : (c1 > c2 ? 1 : 0);
+            }
+        });
+
+        Node sibling = new Node(node.leaf);
+        int half = node.children.size() / 2;
+        while (node.children.size() > half) {
+            sibling.add((Entry) node.children.remove(half));
+        }
+        node.calcBounds();
+
+        return sibling;
+    }
+
+    /**
+     * anything with a bounding box.
+     */
+    private class Entry {
+        Entry()
+        {
+            lower = new int[3];
+            upper = new int[3];
+        }
+
+        boolean covers(int x, int y, int z)
+        {
+            return lower[0] <= x && x <= upper[0]
+                && lower[1] <= y && y <= upper[1]
+                && lower[2] <= z && z <= upper[2];
+        }
+
+        double volume()
+        {
+            double volume = 1;
+            for (int i=0; i < 3; i++) {
+                volume *= (double) upper[i] - lower[i] + 1;
+            }
+            return volume;
+        }
+
+        /**
+         * @return the volume of the bounding box covering this entry and the given one
+         */
+        double volumeWith(Entry that)
+        {
+            double volume = 1;
+            for (int i=0; i < 3; i++) {
+                volume *= (double) Math.max(upper[i], that.upper[i]) - Math.min(lower[i], that.lower[i]) + 1;
+            }
+            return volume;
+        }
+
+        int[] lower;
+        int[] upper;
+        Node parent;
+    }
+
+    private class Unit extends Entry {
+        Unit(Area area, Object object, int sequence)
+        {
+            this.area = area;
+            this.object = object;
+            this.sequence = sequence;
+
+            Cartesian lowerBound = area.getLowerBound();
+            Cartesian upperBound = area.getUpperBound();
+            lower[0] = lowerBound.getX();
+            lower[1] = lowerBound.getY();
+            lower[2] = lowerBound.getZ();
+            upper[0] = upperBound.getX();
+            upper[1] = upperBound.getY();
+            upper[2] = upperBound.getZ();
+        }
+
+        Area area;
+        Object object;
+        int sequence;
+    }
+
+    private class Node extends Entry {
+        Node(boolean leaf)
+        {
+            this.leaf = leaf;
+            children = new Vector();
+        }
+
+        void add(Entry entry)
+        {
+            entry.parent = this;
+            children.add(entry);
+            for (int i=0; i < 3; i++) {
+                if (children.size() == 1 || entry.lower[i] < lower[i]) {
+                    lower[i] = entry.lower[i];
+                }
+                if (children.size() == 1 || entry.upper[i] > upper[i]) {
+                    upper[i] = entry.upper[i];
+                }
+            }
+        }
+
+        void calcBounds()
+        {
+            for (int i=0; i < children.size(); i++) {
+                Entry entry = (Entry) children.elementAt(i);
+                for (int j=0; j < 3; j++) {
+                    if (i == 0 || entry.lower[j] < lower[j]) {
+                        lower[j] = entry.lower[j];
+                    }
+                    if (i == 0 || entry.upper[j] > upper[j]) {
+                        upper[j] = entry.upper[j];
+                    }
+                }
+            }
+        }
+
+        boolean leaf;
+        Vector children;
+    }
+
+    private static final int MAX_ENTRIES = 8;
+
+    private Node root;
+    private WGS84 origin;
+    private int sequence;
+}
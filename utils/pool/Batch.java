@@ -0,0 +1,112 @@
+package utils.pool;
+
+import java.util.Vector;
+
+/**
+ * A set of jobs which are executed in parallel and waited for as a whole.
+ * The calling thread takes part in executing the jobs. Thus a batch completes even if all workers of the
+ * pool are busy, for example when the batch itself is started from within a worker.
+ */
+public class Batch {
+
+    public Batch(WorkerPool pool)
+    {
+        this.pool = pool;
+        jobs = new Vector();
+    }
+
+    /**
+     * add a job to the batch.
+     * Jobs can only be added before the batch is run.
+     */
+    public void add(Runnable job)
+    {
+        jobs.add(job);
+    }
+
+    /**
+     * execute all jobs and return after the last one finished.
+     * If a job fails, the jobs which were not started yet are skipped, and the first failure is thrown
+     * once the running jobs finished. A checked exception is wrapped in a RuntimeException.
+     */
+    public void run()
+    {
+        next = 0;
+        running = 0;
+        failure = null;
+
+        // one helper less than jobs, as the calling thread helps itself
+        int helpers = Math.min(pool.getSize(), jobs.size() - 1);
+        for (int i=0; i < helpers; i++) {
+            pool.execute(new Runnable() {
+                public void run()
+                {
+                    work();
+                }
+            });
+        }
+
+        work();
+
+        synchronized (this) {
+            while (running > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    ;
+                }
+            }
+        }
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+
+    /**
+     * execute jobs of this batch until none is left.
+     */
+    private void work()
+    {
+        while (true) {
+            Runnable job;
+            synchronized (this) {
+                if (next == jobs.size()) {
+                    return;
+                }
+                job = (Runnable) jobs.elementAt(next++);
+                running += 1;
+            }
+
+            try {
+                job.run();
+            } catch (Throwable e) {
+                synchronized (this) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    next = jobs.size();
+                }
+            } finally {
+                synchronized (this) {
+                    running -= 1;
+                    if (running == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private WorkerPool pool;
+    private Vector jobs;
+    private int next;
+    private int running;
+    private Throwable failure;
+}
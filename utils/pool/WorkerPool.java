@@ -0,0 +1,125 @@
+package utils.pool;
+
+import java.util.LinkedList;
+
+import config.Config;
+import logger.Logger;
+
+/**
+ * A fixed number of worker threads which execute jobs from a common queue.
+ * This avoids creating a new thread for every piece of work which can be done in parallel.
+ * The threads are daemon threads, so an unused pool does not keep the program alive.
+ */
+public class WorkerPool {
+
+    /**
+     * the pool shared by all modules which do not need an own one.
+     * It is created on first use. Its size is a config value.
+     * @return the default pool
+     */
+    public static synchronized WorkerPool getDefault()
+    {
+        if (defaultPool == null) {
+            defaultPool = new WorkerPool(Config.utils.pool.WorkerPool.getSize());
+        }
+
+        return defaultPool;
+    }
+
+    /**
+     * The constructor.
+     * Starts the worker threads.
+     * @param size the number of worker threads
+     */
+    public WorkerPool(int size)
+    {
+        if (size < 1) {
+            throw new AssertionError();
+        }
+
+        queue = new LinkedList();
+        finish = false;
+        workers = new Worker[size];
+        for (int i=0; i < size; i++) {
+            workers[i] = new Worker();
+            workers[i].start();
+        }
+    }
+
+    /**
+     * queue a job for execution by one of the workers.
+     * Jobs are started in the order they were queued.
+     */
+    public void execute(Runnable job)
+    {
+        synchronized (queue) {
+            if (finish) {
+                Logger.error("WorkerPool", "execute", "pool is shut down");
+                return;
+            }
+            queue.addLast(job);
+            queue.notify();
+        }
+    }
+
+    /**
+     * @return the number of worker threads
+     */
+    public int getSize()
+    {
+        return workers.length;
+    }
+
+    /**
+     * stop all workers.
+     * Jobs which are already running are finished, queued jobs are dropped.
+     */
+    public void shutdown()
+    {
+        synchronized (queue) {
+            finish = true;
+            queue.clear();
+            queue.notifyAll();
+        }
+    }
+
+    private class Worker extends Thread {
+        Worker()
+        {
+            setDaemon(true);
+        }
+
+        public void run()
+        {
+            while (true) {
+                Runnable job;
+                synchronized (queue) {
+                    while (queue.isEmpty() && ! finish) {
+                        try {
+                            queue.wait();
+                        } catch (InterruptedException e) {
+                            ;
+                        }
+                    }
+                    if (finish) {
+                        return;
+                    }
+                    job = (Runnable) queue.removeFirst();
+                }
+
+                try {
+                    job.run();
+                } catch (Throwable e) {
+                    // a worker must survive any job
+                    Logger.error("WorkerPool", "run", "job failed: " + e);
+                }
+            }
+        }
+    }
+
+    private static WorkerPool defaultPool = null;
+
+    private LinkedList queue;
+    private Worker[] workers;
+    private boolean finish;
+}
@@ -0,0 +1,199 @@
+package utils.raster;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A raster of doubles in a memory mapped file.
+ * The values are not on the heap, so the raster may be larger than the heap and is paged by the operating
+ * system. It is indexed by long. As a single mapping is limited to 2 GB, the file is mapped in segments.
+ * A raster with a file of its own survives the process and can be opened again, e.g. after a restart.
+ * Reading and writing different parts of the raster from several threads at once is allowed.
+ */
+public class MappedRaster {
+    /**
+     * The constructor for a temporary raster.
+     * The file is deleted when the raster is closed, or at the latest when the process exits.
+     * @param size the number of values
+     */
+    public MappedRaster(long size) throws IOException
+    {
+        this(createTemporaryFile(), size, true);
+    }
+
+    /**
+     * The constructor.
+     * If the file exists already its values are kept, as far as they are within the size.
+     * @param file the file the values are stored in
+     * @param size the number of values
+     */
+    public MappedRaster(File file, long size) throws IOException
+    {
+        this(file, size, false);
+    }
+
+    /**
+     * The constructor.
+     * If the file cannot be mapped, it is closed again, and deleted if it is temporary.
+     */
+    private MappedRaster(File file, long size, boolean temporary) throws IOException
+    {
+        if (size < 0) {
+            throw new AssertionError();
+        }
+
+        this.file = file;
+        this.size = size;
+        this.temporary = temporary;
+
+        RandomAccessFile access = null;
+        boolean mapped = false;
+        try {
+            access = new RandomAccessFile(file, "rw");
+            channel = access.getChannel();
+            int count = (int) ((size + SEGMENT - 1) / SEGMENT);
+            segments = new DoubleBuffer[count];
+            mappings = new MappedByteBuffer[count];
+            for (int i=0; i < count; i++) {
+                long first = (long) i * SEGMENT;
+                long length = Math.min(SEGMENT, size - first);
+                mappings[i] = channel.map(FileChannel.MapMode.READ_WRITE, first * 8, length * 8);
+                mappings[i].order(ByteOrder.nativeOrder());
+                segments[i] = mappings[i].asDoubleBuffer();
+            }
+            mapped = true;
+        } finally {
+            if (! mapped) {
+                if (access != null) {
+                    try {
+                        // closes the channel as well
+                        access.close();
+                    } catch (IOException e) {
+                        ;
+                    }
+                }
+                if (temporary) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of values
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the file the values are stored in
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    public double get(long index)
+    {
+        return segments[(int) (index / SEGMENT)].get((int) (index % SEGMENT));
+    }
+
+    public void put(long index, double value)
+    {
+        segments[(int) (index / SEGMENT)].put((int) (index % SEGMENT), value);
+    }
+
+    /**
+     * read consecutive values.
+     * @param index the index of the first value in the raster
+     * @param values the array to read into
+     * @param offset the position of the first value in the array
+     * @param length the number of values
+     */
+    public void get(long index, double[] values, int offset, int length)
+    {
+        while (length > 0) {
+            DoubleBuffer segment = segments[(int) (index / SEGMENT)].duplicate();
+            segment.position((int) (index % SEGMENT));
+            int part = Math.min(length, segment.remaining());
+            segment.get(values, offset, part);
+            index += part;
+            offset += part;
+            length -= part;
+        }
+    }
+
+    /**
+     * write consecutive values.
+     * @param index the index of the first value in the raster
+     * @param values the array to write from
+     * @param offset the position of the first value in the array
+     * @param length the number of values
+     */
+    public void put(long index, double[] values, int offset, int length)
+    {
+        while (length > 0) {
+            DoubleBuffer segment = segments[(int) (index / SEGMENT)].duplicate();
+            segment.position((int) (index % SEGMENT));
+            int part = Math.min(length, segment.remaining());
+            segment.put(values, offset, part);
+            index += part;
+            offset += part;
+            length -= part;
+        }
+    }
+
+    /**
+     * write all changed values to the file.
+     */
+    public void flush()
+    {
+        for (int i=0; i < mappings.length; i++) {
+            mappings[i].force();
+        }
+    }
+
+    /**
+     * close the file, and delete it if the raster is temporary.
+     * The raster must not be used afterwards. The memory is released when the raster is garbage collected.
+     */
+    public void close() throws IOException
+    {
+        if (! temporary) {
+            flush();
+        }
+        channel.close();
+        segments = null;
+        mappings = null;
+        if (temporary) {
+            file.delete();
+        }
+    }
+
+    /**
+     * @return a new temporary file, which is deleted when the process exits at the latest
+     */
+    private static File createTemporaryFile() throws IOException
+    {
+        File file = File.createTempFile("raster", ".bin");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /** the number of values per mapping */
+    private static final long SEGMENT = 1L << 27;
+
+    private File file;
+    private long size;
+    private boolean temporary;
+    private FileChannel channel;
+    private MappedByteBuffer[] mappings;
+    private DoubleBuffer[] segments;
+}